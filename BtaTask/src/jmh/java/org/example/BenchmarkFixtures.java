@@ -0,0 +1,116 @@
+package org.example;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates odt files for benchmarks
+ */
+public class BenchmarkFixtures {
+    public static final String OLD_IMPORT = "[import block_1.odt]";
+    public static final String NEW_IMPORT = "[import block_2.odt]";
+
+    /**
+     * Generates content.xml
+     * @param paragraphs number of paragraphs
+     * @param importDensity share of paragraphs which contain an import, 0 to 1
+     * @return XML bytes
+     */
+    public static byte[] contentXml(int paragraphs, double importDensity) {
+        Random random = new Random(42);
+        StringBuilder xml = new StringBuilder(paragraphs * 120);
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        xml.append("<office:document-content xmlns:office=\"urn:oasis:names:tc:opendocument:xmlns:office:1.0\"");
+        xml.append(" xmlns:text=\"urn:oasis:names:tc:opendocument:xmlns:text:1.0\" office:version=\"1.3\">");
+        xml.append("<office:body><office:text>");
+        for (int i = 0; i < paragraphs; i++) {
+            xml.append("<text:p text:style-name=\"P1\">Paragraph ").append(i);
+            xml.append(" with some ordinary template text <text:span text:style-name=\"T1\">and a span</text:span>");
+            if (random.nextDouble() < importDensity) {
+                xml.append("<text:text-input text:description=\"import\">").append(OLD_IMPORT).append("</text:text-input>");
+            }
+            xml.append("</text:p>");
+        }
+        xml.append("</office:text></office:body></office:document-content>");
+        return xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates odt file with content.xml, styles.xml, meta.xml and an image
+     * @param file target file
+     * @param paragraphs number of paragraphs in content.xml
+     * @param importDensity share of paragraphs which contain an import, 0 to 1
+     * @return created file
+     * @throws IOException throws exception on error
+     */
+    public static File createOdt(File file, int paragraphs, double importDensity) throws IOException {
+        byte[] image = new byte[64 * 1024];
+        new Random(7).nextBytes(image);
+
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file))) {
+            byte[] mimetype = "application/vnd.oasis.opendocument.text".getBytes(StandardCharsets.US_ASCII);
+            ZipEntry mimetypeEntry = new ZipEntry("mimetype");
+            mimetypeEntry.setMethod(ZipEntry.STORED);
+            mimetypeEntry.setSize(mimetype.length);
+            CRC32 crc = new CRC32();
+            crc.update(mimetype);
+            mimetypeEntry.setCrc(crc.getValue());
+            putEntry(zos, mimetypeEntry, mimetype);
+
+            putEntry(zos, new ZipEntry("content.xml"), contentXml(paragraphs, importDensity));
+            putEntry(zos, new ZipEntry("styles.xml"), contentXml(paragraphs / 10, importDensity));
+            putEntry(zos, new ZipEntry("meta.xml"), ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                    + "<office:document-meta xmlns:office=\"urn:oasis:names:tc:opendocument:xmlns:office:1.0\"/>")
+                    .getBytes(StandardCharsets.UTF_8));
+            putEntry(zos, new ZipEntry("Pictures/image.png"), image);
+        }
+        return file;
+    }
+
+    /**
+     * Creates folder with odt files spread over sub folders
+     * @param files number of odt files
+     * @param paragraphs number of paragraphs in each content.xml
+     * @param importDensity share of paragraphs which contain an import, 0 to 1
+     * @return created folder
+     * @throws IOException throws exception on error
+     */
+    public static File createFolder(int files, int paragraphs, double importDensity) throws IOException {
+        File folder = Files.createTempDirectory("odt_bench").toFile();
+        for (int i = 0; i < files; i++) {
+            File subFolder = new File(folder, "folder_" + (i % 10));
+            subFolder.mkdirs();
+            createOdt(new File(subFolder, "template_" + i + ".odt"), paragraphs, importDensity);
+        }
+        return folder;
+    }
+
+    /**
+     * Deletes file or folder recursively
+     * @param file file or folder
+     * @throws IOException throws exception on error
+     */
+    public static void delete(File file) throws IOException {
+        try (Stream<Path> paths = Files.walk(file.toPath())) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static void putEntry(ZipOutputStream zos, ZipEntry entry, byte[] content) throws IOException {
+        zos.putNextEntry(entry);
+        zos.write(content);
+        zos.closeEntry();
+    }
+}
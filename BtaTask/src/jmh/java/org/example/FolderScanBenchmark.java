@@ -0,0 +1,53 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scan of a folder with many odt files
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FolderScanBenchmark {
+    @Param({"200"})
+    public int files;
+
+    @Param({"100", "2000"})
+    public int size;
+
+    @Param({"0.01"})
+    public double importDensity;
+
+    @Param({"serial", "forkjoin"})
+    public String executorType;
+
+    private File folder;
+    private ExecutorService executor;
+    private ODTReader reader;
+
+    @Setup
+    public void setUp() throws Exception {
+        folder = BenchmarkFixtures.createFolder(files, size, importDensity);
+        executor = ScanExecutors.create(executorType, 0);
+        reader = new ODTReader(executor);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        BenchmarkFixtures.delete(folder);
+    }
+
+    @Benchmark
+    public Map<File, List<String>> scanFolder() {
+        return reader.scanODTFiles(folder.getAbsolutePath());
+    }
+}
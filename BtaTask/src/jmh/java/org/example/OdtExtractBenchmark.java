@@ -0,0 +1,44 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction of all imports from a whole odt file
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OdtExtractBenchmark {
+    @Param({"100", "10000"})
+    public int size;
+
+    @Param({"0.0", "0.01", "0.2"})
+    public double importDensity;
+
+    @Param({"dom", "stax"})
+    public String extractor;
+
+    private File odtFile;
+    private ImportExtractor importExtractor;
+
+    @Setup
+    public void setUp() throws Exception {
+        odtFile = BenchmarkFixtures.createOdt(Files.createTempFile("bench", ".odt").toFile(), size, importDensity);
+        importExtractor = ImportExtractor.create(extractor);
+    }
+
+    @TearDown
+    public void tearDown() {
+        odtFile.delete();
+    }
+
+    @Benchmark
+    public List<String> extractOdt() throws Exception {
+        return ODTReader.extractImportsFromAllXML(odtFile, importExtractor);
+    }
+}
@@ -0,0 +1,53 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full rewrite of a single odt file.
+ * Each invocation swaps the import back and forth, so every call has the same amount of work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RewriteBenchmark {
+    @Param({"100", "10000"})
+    public int size;
+
+    @Param({"0.01", "0.2"})
+    public double importDensity;
+
+    @Param({"dom", "stax", "bytes"})
+    public String rewriter;
+
+    private File odtFile;
+    private RewriteOptions options;
+    private boolean swapped;
+
+    @Setup
+    public void setUp() throws Exception {
+        odtFile = BenchmarkFixtures.createOdt(Files.createTempFile("bench", ".odt").toFile(), size, importDensity);
+        EntryRewriter entryRewriter = rewriter.equals("bytes")
+                ? new ByteEntryRewriter(new DomEntryRewriter())
+                : EntryRewriter.create(rewriter);
+        options = new RewriteOptions(EntrySelector.DEFAULT, false, CompressionLevels.DEFAULT, ODTFileWalker.DEFAULT,
+                entryRewriter);
+    }
+
+    @TearDown
+    public void tearDown() {
+        odtFile.delete();
+    }
+
+    @Benchmark
+    public int rewriteOdt() throws Exception {
+        int replaced = swapped
+                ? ODTEditor.rewriteOdt(odtFile, ImportMatcher.of(BenchmarkFixtures.NEW_IMPORT, BenchmarkFixtures.OLD_IMPORT), options)
+                : ODTEditor.rewriteOdt(odtFile, ImportMatcher.of(BenchmarkFixtures.OLD_IMPORT, BenchmarkFixtures.NEW_IMPORT), options);
+        swapped = !swapped;
+        return replaced;
+    }
+}
@@ -0,0 +1,44 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and import extraction of a single XML entry
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class XmlExtractBenchmark {
+    @Param({"100", "10000"})
+    public int size;
+
+    @Param({"0.0", "0.01", "0.2"})
+    public double importDensity;
+
+    @Param({"dom", "stax"})
+    public String extractor;
+
+    @Param({"false", "true"})
+    public boolean preFilter;
+
+    private byte[] xml;
+    private ImportExtractor importExtractor;
+
+    @Setup
+    public void setUp() {
+        xml = BenchmarkFixtures.contentXml(size, importDensity);
+        importExtractor = ImportExtractor.create(extractor);
+        if (preFilter) {
+            importExtractor = new ImportMarkerFilter(importExtractor);
+        }
+    }
+
+    @Benchmark
+    public List<String> extractEntry() throws Exception {
+        return importExtractor.extractImports("content.xml", () -> new ByteArrayInputStream(xml));
+    }
+}
@@ -0,0 +1,257 @@
+package org.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replaces imports directly in the inflated entry bytes, without parsing XML.
+ * Only text:text-input elements which hold plain text are changed, their text is unescaped, replaced and escaped again,
+ * all other bytes are copied as they are. When markup, comments, CDATA, a document type or an unknown
+ * encoding could make the bytes mean something else than they look, the entry is passed to the parsed rewriter.
+ * Entry is held in memory.
+ */
+public class ByteEntryRewriter implements EntryRewriter {
+    private static final byte[] START_TAG = "<text:text-input".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END_TAG = "</text:text-input>".getBytes(StandardCharsets.US_ASCII);
+    private static final Pattern ENCODING = Pattern.compile("^<\\?xml[^>]*encoding\\s*=\\s*[\"']([^\"']+)[\"']");
+
+    private final EntryRewriter fallback;
+
+    /**
+     * @param fallback rewriter used when bytes can not be changed safely
+     */
+    public ByteEntryRewriter(EntryRewriter fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * Text of a single text:text-input element which is replaced
+     */
+    private record Change(int start, int end, String oldText, String newText) {
+    }
+
+    @Override
+    public Rewrite prepare(String entryName, String location, ImportExtractor.Source source, ImportMatcher matcher,
+                           boolean dryRun, List<String> imports) throws Exception {
+        byte[] data;
+        try (InputStream in = source.open()) {
+            data = in.readAllBytes();
+        }
+
+        List<Change> changes = new ArrayList<>();
+        String reason = findChanges(data, matcher, changes);
+        if (reason != null) {
+            System.out.println("Parsed rewrite of " + location + ": " + reason);
+            Metrics.get().increment(Metrics.FALLBACK_ENTRIES, 1);
+            return fallback.prepare(entryName, location, () -> new ByteArrayInputStream(data), matcher, dryRun, imports);
+        }
+
+        System.out.println("Byte rewrite of " + location);
+        Metrics.get().increment(Metrics.BYTE_ENTRIES, 1);
+        if (imports != null) {
+            imports.addAll(new StaxImportExtractor().extractImports(entryName, () -> new ByteArrayInputStream(data)));
+        }
+        for (Change change : changes) {
+            if (dryRun) {
+                System.out.println("Would replace \"" + change.oldText() + "\" with \"" + change.newText() + "\" in " + location);
+            } else {
+                System.out.println("Replacing import in " + entryName);
+            }
+        }
+
+        return new Rewrite() {
+            @Override
+            public int replacements() {
+                return changes.size();
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws Exception {
+                int position = 0;
+                for (Change change : changes) {
+                    out.write(data, position, change.start() - position);
+                    out.write(escape(change.newText()).getBytes(StandardCharsets.UTF_8));
+                    position = change.end();
+                }
+                out.write(data, position, data.length - position);
+            }
+        };
+    }
+
+    /**
+     * Finds text:text-input elements whose text changes
+     * @param data entry bytes
+     * @param matcher old imports with their new imports
+     * @param changes receives changed elements in document order
+     * @return why the entry has to be parsed, null when bytes can be changed directly
+     */
+    private static String findChanges(byte[] data, ImportMatcher matcher, List<Change> changes) {
+        if (!ImportMarkerFilter.isUtf8Compatible(data)) {
+            return "not UTF-8";
+        }
+        Matcher encoding = ENCODING.matcher(new String(data, 0, Math.min(data.length, 200), StandardCharsets.US_ASCII));
+        if (encoding.find() && !encoding.group(1).equalsIgnoreCase("UTF-8")) {
+            return "encoding " + encoding.group(1);
+        }
+        // Entities of a document type and element-like text in comments or CDATA look the same as markup in bytes
+        if (indexOf(data, "<!".getBytes(StandardCharsets.US_ASCII), 0) >= 0) {
+            return "document type, comment or CDATA section";
+        }
+
+        int position = 0;
+        int start;
+        while ((start = indexOf(data, START_TAG, position)) >= 0) {
+            int nameEnd = start + START_TAG.length;
+            if (nameEnd >= data.length) {
+                return "unterminated text:text-input";
+            }
+            byte next = data[nameEnd];
+            if (next != '>' && next != '/' && next != ' ' && next != '\t' && next != '\n' && next != '\r') {
+                // Other element with the same name start
+                position = nameEnd;
+                continue;
+            }
+            int tagEnd = endOfTag(data, nameEnd);
+            if (tagEnd < 0) {
+                return "unterminated text:text-input";
+            }
+            if (data[tagEnd - 1] == '/') {
+                position = tagEnd + 1;
+                continue;
+            }
+
+            int contentStart = tagEnd + 1;
+            int contentEnd = indexOf(data, new byte[]{'<'}, contentStart);
+            if (contentEnd < 0 || !startsWith(data, contentEnd, END_TAG)) {
+                // Import could be split by child elements
+                return "markup inside text:text-input";
+            }
+            String escaped = new String(data, contentStart, contentEnd - contentStart, StandardCharsets.UTF_8);
+            if (escaped.indexOf('\r') >= 0) {
+                // Parser would normalize line ends
+                return "carriage return inside text:text-input";
+            }
+            String text = unescape(escaped);
+            if (text == null) {
+                return "entity reference inside text:text-input";
+            }
+            String newText = matcher.replace(text);
+            if (newText != text) {
+                changes.add(new Change(contentStart, contentEnd, text, newText));
+            }
+            position = contentEnd + END_TAG.length;
+        }
+        return null;
+    }
+
+    /**
+     * @return index of '>' closing the tag, quoted attribute values may hold '>'
+     */
+    private static int endOfTag(byte[] data, int from) {
+        byte quote = 0;
+        for (int i = from; i < data.length; i++) {
+            byte b = data[i];
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Resolves predefined entities and character references
+     * @return text, null when it holds other entity references
+     */
+    static String unescape(String escaped) {
+        if (escaped.indexOf('&') < 0) {
+            return escaped;
+        }
+        StringBuilder text = new StringBuilder(escaped.length());
+        int i = 0;
+        while (i < escaped.length()) {
+            char c = escaped.charAt(i);
+            if (c != '&') {
+                text.append(c);
+                i++;
+                continue;
+            }
+            int end = escaped.indexOf(';', i);
+            if (end < 0) {
+                return null;
+            }
+            String name = escaped.substring(i + 1, end);
+            switch (name) {
+                case "amp" -> text.append('&');
+                case "lt" -> text.append('<');
+                case "gt" -> text.append('>');
+                case "quot" -> text.append('"');
+                case "apos" -> text.append('\'');
+                default -> {
+                    try {
+                        if (name.startsWith("#x")) {
+                            text.appendCodePoint(Integer.parseInt(name.substring(2), 16));
+                        } else if (name.startsWith("#")) {
+                            text.appendCodePoint(Integer.parseInt(name.substring(1)));
+                        } else {
+                            return null;
+                        }
+                    } catch (IllegalArgumentException e) {
+                        return null;
+                    }
+                }
+            }
+            i = end + 1;
+        }
+        return text.toString();
+    }
+
+    /**
+     * Escapes text content, same characters as the XML writers escape
+     */
+    static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> escaped.append("&amp;");
+                case '<' -> escaped.append("&lt;");
+                case '>' -> escaped.append("&gt;");
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+        for (int i = from; i <= data.length - pattern.length; i++) {
+            if (startsWith(data, i, pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, byte[] pattern) {
+        if (offset + pattern.length > data.length) {
+            return false;
+        }
+        for (int j = 0; j < pattern.length; j++) {
+            if (data[offset + j] != pattern[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
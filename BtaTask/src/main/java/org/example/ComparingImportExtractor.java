@@ -0,0 +1,37 @@
+package org.example;
+
+import org.example.errors.XMLFileReadingException;
+
+import java.util.List;
+
+/**
+ * Runs two extractors on the same entry and reports when their results differ.
+ * Result of the first extractor is returned.
+ */
+public class ComparingImportExtractor implements ImportExtractor {
+    private final ImportExtractor expected;
+    private final ImportExtractor actual;
+
+    public ComparingImportExtractor(ImportExtractor expected, ImportExtractor actual) {
+        this.expected = expected;
+        this.actual = actual;
+    }
+
+    @Override
+    public List<String> extractImports(String entryName, Source source) throws XMLFileReadingException {
+        List<String> expectedImports = expected.extractImports(entryName, source);
+        List<String> actualImports;
+        try {
+            actualImports = actual.extractImports(entryName, source);
+        } catch (XMLFileReadingException e) {
+            System.err.println("Extractor mismatch in " + entryName + ": " + e.getMessage() + e.getCause());
+            return expectedImports;
+        }
+
+        if (!expectedImports.equals(actualImports)) {
+            System.err.println("Extractor mismatch in " + entryName + ": expected " + expectedImports
+                    + " but was " + actualImports);
+        }
+        return expectedImports;
+    }
+}
@@ -0,0 +1,84 @@
+package org.example;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Deflate level for each entry type, chosen by file extension.
+ * Level 0 stores entry without compression.
+ */
+public class CompressionLevels {
+    /**
+     * Default deflate level for every entry
+     */
+    public static final CompressionLevels DEFAULT = new CompressionLevels(Map.of(), Deflater.DEFAULT_COMPRESSION);
+
+    private final Map<String, Integer> levels;
+    private final int defaultLevel;
+
+    /**
+     * @param levels extension without dot -> level
+     * @param defaultLevel level of entries with other extensions
+     */
+    public CompressionLevels(Map<String, Integer> levels, int defaultLevel) {
+        this.levels = Map.copyOf(levels);
+        this.defaultLevel = defaultLevel;
+    }
+
+    /**
+     * Parses levels like "xml:9, png:0, *:6", where * sets level of all other entries
+     * @param spec comma separated extension:level pairs, empty uses default level
+     * @return compression levels
+     */
+    public static CompressionLevels parse(String spec) {
+        Map<String, Integer> levels = new HashMap<>();
+        int defaultLevel = Deflater.DEFAULT_COMPRESSION;
+        if (spec == null || spec.isBlank()) {
+            return DEFAULT;
+        }
+
+        for (String pair : spec.split(",")) {
+            if (pair.isBlank()) {
+                continue;
+            }
+            int separator = pair.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid compression level: " + pair.trim() + ", expected extension:level");
+            }
+            String extension = pair.substring(0, separator).trim().toLowerCase(Locale.ROOT);
+            int level = parseLevel(pair.substring(separator + 1).trim());
+            if (extension.equals("*")) {
+                defaultLevel = level;
+            } else {
+                levels.put(extension.startsWith(".") ? extension.substring(1) : extension, level);
+            }
+        }
+        return new CompressionLevels(levels, defaultLevel);
+    }
+
+    /**
+     * @param entryName entry name
+     * @return deflate level for the entry, 0 for stored entries
+     */
+    public int levelFor(String entryName) {
+        int dot = entryName.lastIndexOf('.');
+        if (dot < 0 || dot < entryName.lastIndexOf('/')) {
+            return defaultLevel;
+        }
+        return levels.getOrDefault(entryName.substring(dot + 1).toLowerCase(Locale.ROOT), defaultLevel);
+    }
+
+    private static int parseLevel(String level) {
+        try {
+            int value = Integer.parseInt(level);
+            if (value >= 0 && value <= 9) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid compression level: " + level + ", expected 0-9");
+    }
+}
@@ -0,0 +1,116 @@
+package org.example;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.*;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Builds DOM of the whole entry, changes text:text-input nodes and writes the tree back indented
+ */
+public class DomEntryRewriter implements EntryRewriter {
+
+    @Override
+    public Rewrite prepare(String entryName, String location, ImportExtractor.Source source, ImportMatcher matcher,
+                           boolean dryRun, List<String> imports) throws Exception {
+        Document doc;
+        try (InputStream in = source.open()) {
+            doc = parseXML(in);
+        }
+        if (imports != null) {
+            imports.addAll(DomImportExtractor.findImports(doc, entryName));
+        }
+        int replaced = dryRun ? planImports(doc, matcher, location) : replaceImports(doc, matcher, entryName);
+
+        return new Rewrite() {
+            @Override
+            public int replacements() {
+                return replaced;
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws Exception {
+                writeXML(doc, out);
+            }
+        };
+    }
+
+    /**
+     * Parses XML document
+     * @param in XML content
+     * @return parsed document
+     * @throws Exception throws exception on error
+     */
+    static Document parseXML(InputStream in) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        Document doc = builder.parse(in);
+        doc.getDocumentElement().normalize();
+        return doc;
+    }
+
+    /**
+     * Finds and modifies text nodes containing import references
+     * @param doc XML document
+     * @param matcher old imports with their new imports
+     * @param name name of XML file, used for logging
+     * @return number of modified nodes
+     */
+    static int replaceImports(Document doc, ImportMatcher matcher, String name) {
+        int replaced = 0;
+        NodeList textNodes = doc.getElementsByTagName("text:text-input");
+        for (int i = 0; i < textNodes.getLength(); i++) {
+            Node node = textNodes.item(i);
+            String text = node.getTextContent();
+            String newText = matcher.replace(text);
+            if (newText != text) {
+                System.out.println("Replacing import in " + name);
+                node.setTextContent(newText);
+                replaced++;
+            }
+        }
+        return replaced;
+    }
+
+    /**
+     * Prints replacements which would be made, document is not changed
+     * @param doc XML document
+     * @param matcher old imports with their new imports
+     * @param name name of XML file and odt file, used for logging
+     * @return number of nodes which would be modified
+     */
+    static int planImports(Document doc, ImportMatcher matcher, String name) {
+        int planned = 0;
+        NodeList textNodes = doc.getElementsByTagName("text:text-input");
+        for (int i = 0; i < textNodes.getLength(); i++) {
+            String text = textNodes.item(i).getTextContent();
+            String newText = matcher.replace(text);
+            if (newText != text) {
+                System.out.println("Would replace \"" + text + "\" with \"" + newText + "\" in " + name);
+                planned++;
+            }
+        }
+        return planned;
+    }
+
+    /**
+     * Writes XML document to stream, stream is left open
+     * @param doc XML document
+     * @param out output stream
+     * @throws TransformerException throws exception on error
+     */
+    static void writeXML(Document doc, OutputStream out) throws TransformerException {
+        TransformerFactory transformerFactory = TransformerFactory.newInstance();
+        Transformer transformer = transformerFactory.newTransformer();
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.transform(new DOMSource(doc), new StreamResult(out));
+    }
+}
@@ -0,0 +1,59 @@
+package org.example;
+
+import org.example.errors.XMLFileReadingException;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds DOM of the whole entry and finds imports with XPath
+ */
+public class DomImportExtractor implements ImportExtractor {
+
+    @Override
+    public List<String> extractImports(String entryName, Source source) throws XMLFileReadingException {
+        List<String> imports = new ArrayList<>();
+
+        try (InputStream in = source.open()) {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            Document doc = builder.parse(in);
+            doc.getDocumentElement().normalize();
+            imports.addAll(findImports(doc, entryName));
+        } catch (Exception e) {
+            throw new XMLFileReadingException("Error reading " + entryName + ": ", e);
+        }
+        return imports;
+    }
+
+    /**
+     * Finds imports in already parsed document, used when the same document is also rewritten
+     * @param doc parsed and normalized entry
+     * @param entryName name of the entry, used in "(from entry)" attribution
+     * @return list of imports mentioned in the entry
+     * @throws XPathExpressionException throws exception on error
+     */
+    static List<String> findImports(Document doc, String entryName) throws XPathExpressionException {
+        List<String> imports = new ArrayList<>();
+
+        // Use XPath to find import-like text anywhere
+        XPathFactory xPathFactory = XPathFactory.newInstance();
+        XPath xpath = xPathFactory.newXPath();
+        String expression = "//*[contains(text(), '[import')]";
+        NodeList importNodes = (NodeList) xpath.evaluate(expression, doc, XPathConstants.NODESET);
+
+        for (int i = 0; i < importNodes.getLength(); i++) {
+            imports.add(importNodes.item(i).getTextContent().trim() + " (from " + entryName + ")");
+        }
+        return imports;
+    }
+}
@@ -0,0 +1,63 @@
+package org.example;
+
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Finds and replaces imports in a single XML entry of a rewritten odt file
+ */
+public interface EntryRewriter {
+    /**
+     * Reads entry, counts replacements and prepares its new content
+     * @param entryName name of the entry, used in logging and "(from entry)" attribution
+     * @param location entry and file name, used in dry run messages
+     * @param source opens entry content, may be called more than once
+     * @param matcher old imports with their new imports
+     * @param dryRun only prints planned replacements
+     * @param imports receives imports found before replacing, null when not needed
+     * @return prepared rewrite, with 0 replacements when entry stays unchanged
+     * @throws Exception throws exception on error
+     */
+    Rewrite prepare(String entryName, String location, ImportExtractor.Source source, ImportMatcher matcher,
+                    boolean dryRun, List<String> imports) throws Exception;
+
+    /**
+     * New content of a single entry
+     */
+    interface Rewrite {
+        /**
+         * @return number of replaced imports, or imports which would be replaced in dry run
+         */
+        int replacements();
+
+        /**
+         * Writes new content, stream is left open
+         * @param out target stream
+         * @throws Exception throws exception on error
+         */
+        void writeTo(OutputStream out) throws Exception;
+
+        /**
+         * @return true when content is produced while it is written, so it should go straight to the archive
+         * instead of being buffered and compressed in parallel
+         */
+        default boolean streaming() {
+            return false;
+        }
+    }
+
+    /**
+     * Creates rewriter by name
+     * @param type dom (whole entry in memory) or stax (streaming, keeps original whitespace)
+     * @return rewriter
+     */
+    static EntryRewriter create(String type) {
+        if (type == null || type.isEmpty() || type.equalsIgnoreCase("dom")) {
+            return new DomEntryRewriter();
+        }
+        if (type.equalsIgnoreCase("stax")) {
+            return new StaxEntryRewriter();
+        }
+        throw new IllegalArgumentException("Unknown entry rewriter: " + type);
+    }
+}
@@ -0,0 +1,182 @@
+package org.example;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which XML parts of an odt file are opened.
+ * Entries are matched against include and exclude globs, where * does not cross folders and ** does.
+ * When embedded objects are enabled, META-INF/manifest.xml is read and content.xml and styles.xml
+ * of every embedded document listed there are selected too.
+ */
+public class EntrySelector {
+    public static final String MANIFEST = "META-INF/manifest.xml";
+    private static final String MANIFEST_NS = "urn:oasis:names:tc:opendocument:xmlns:manifest:1.0";
+    private static final String ODF_MEDIA_TYPE = "application/vnd.oasis.opendocument.";
+
+    /**
+     * Only main content and styles, the parts which hold imports
+     */
+    public static final EntrySelector DEFAULT = new EntrySelector(List.of("content.xml", "styles.xml"), List.of(), false);
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    private final List<String> include;
+    private final List<String> exclude;
+    private final List<Pattern> includePatterns;
+    private final List<Pattern> excludePatterns;
+    private final boolean embeddedObjects;
+
+    /**
+     * @param include globs of entries to open
+     * @param exclude globs of entries to skip even when included
+     * @param embeddedObjects also open content.xml and styles.xml of embedded documents listed in manifest
+     */
+    public EntrySelector(List<String> include, List<String> exclude, boolean embeddedObjects) {
+        this.include = List.copyOf(include);
+        this.exclude = List.copyOf(exclude);
+        this.includePatterns = include.stream().map(EntrySelector::globToPattern).toList();
+        this.excludePatterns = exclude.stream().map(EntrySelector::globToPattern).toList();
+        this.embeddedObjects = embeddedObjects;
+    }
+
+    /**
+     * Creates selector from comma separated glob lists
+     * @param include comma separated globs of entries to open, empty uses content.xml and styles.xml
+     * @param exclude comma separated globs of entries to skip
+     * @param embeddedObjects also open embedded documents listed in manifest
+     * @return selector
+     */
+    public static EntrySelector create(String include, String exclude, boolean embeddedObjects) {
+        List<String> includeList = split(include);
+        return new EntrySelector(includeList.isEmpty() ? DEFAULT.include : includeList, split(exclude), embeddedObjects);
+    }
+
+    /**
+     * Selects entries of an opened odt file
+     * @param entryNames names of all file entries in odt file
+     * @param manifest opens META-INF/manifest.xml, null when odt file has no manifest
+     * @return names of selected entries in the given order
+     * @throws IOException when manifest can not be read
+     */
+    public Set<String> select(List<String> entryNames, ImportExtractor.Source manifest) throws IOException {
+        Set<String> embeddedPaths = embeddedObjects && manifest != null ? readEmbeddedPaths(manifest) : Set.of();
+        Set<String> selected = new LinkedHashSet<>();
+
+        for (String entryName : entryNames) {
+            if (isSelected(entryName, embeddedPaths)) {
+                selected.add(entryName);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Checks single entry
+     * @param entryName entry name
+     * @param embeddedPaths folders of embedded documents, e.g. "Object 1/"
+     * @return true when entry should be opened
+     */
+    public boolean isSelected(String entryName, Set<String> embeddedPaths) {
+        if (matchesAny(excludePatterns, entryName)) {
+            return false;
+        }
+        if (matchesAny(includePatterns, entryName)) {
+            return true;
+        }
+
+        // Main parts of embedded documents
+        int slash = entryName.lastIndexOf('/');
+        if (slash < 0 || embeddedPaths.isEmpty()) {
+            return false;
+        }
+        String name = entryName.substring(slash + 1);
+        return (name.equals("content.xml") || name.equals("styles.xml"))
+                && embeddedPaths.contains(entryName.substring(0, slash + 1));
+    }
+
+    /**
+     * @return short description of the selection, changes when selection changes
+     */
+    public String describe() {
+        return "include=" + include + ";exclude=" + exclude + ";embedded=" + embeddedObjects;
+    }
+
+    /**
+     * Reads folders of embedded documents from manifest
+     */
+    private static Set<String> readEmbeddedPaths(ImportExtractor.Source manifest) throws IOException {
+        Set<String> paths = new HashSet<>();
+
+        try (InputStream in = manifest.open()) {
+            XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("file-entry")) {
+                        String path = reader.getAttributeValue(MANIFEST_NS, "full-path");
+                        String mediaType = reader.getAttributeValue(MANIFEST_NS, "media-type");
+                        if (path != null && !path.equals("/") && mediaType != null && mediaType.startsWith(ODF_MEDIA_TYPE)) {
+                            paths.add(path.endsWith("/") ? path : path + "/");
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid " + MANIFEST + ": " + e.getMessage(), e);
+        }
+        return paths;
+    }
+
+    private static boolean matchesAny(List<Pattern> patterns, String entryName) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(entryName).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> split(String globs) {
+        List<String> result = new ArrayList<>();
+        if (globs == null) {
+            return result;
+        }
+        for (String glob : globs.split(",")) {
+            if (!glob.trim().isEmpty()) {
+                result.add(glob.trim());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converts glob to regular expression, * matches inside one folder, ** across folders, ? one character
+     */
+    static Pattern globToPattern(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    regex.append(".*");
+                    i++;
+                } else {
+                    regex.append("[^/]*");
+                }
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+}
@@ -0,0 +1,67 @@
+package org.example;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Files found by a single walk of the folder, indexed by file name.
+ * Built once per run by the scan, so the editor finds its target without walking the folder again.
+ * Names are compared ignoring case, files with the same name in different folders are kept as duplicates.
+ */
+public class FileCatalog {
+    private final List<File> files;
+    private final Map<String, List<File>> byName = new HashMap<>();
+
+    /**
+     * @param files found files sorted by path
+     */
+    public FileCatalog(List<File> files) {
+        this.files = List.copyOf(files);
+        for (File file : this.files) {
+            byName.computeIfAbsent(key(file.getName()), key -> new ArrayList<>(1)).add(file);
+        }
+    }
+
+    /**
+     * Walks folder once and catalogs accepted files, used when no scan was run before
+     * @param walker decides which files are cataloged
+     * @param root folder to walk
+     * @return catalog of the folder
+     */
+    public static FileCatalog build(ODTFileWalker walker, Path root) {
+        return new FileCatalog(walker.list(root));
+    }
+
+    /**
+     * @return all files sorted by path
+     */
+    public List<File> files() {
+        return files;
+    }
+
+    /**
+     * @param fileName file name without folder
+     * @return files with the name sorted by path, empty when none is found
+     */
+    public List<File> find(String fileName) {
+        return Collections.unmodifiableList(byName.getOrDefault(key(fileName), List.of()));
+    }
+
+    /**
+     * @return names found in more than one folder with their files, sorted by name
+     */
+    public SortedMap<String, List<File>> duplicates() {
+        SortedMap<String, List<File>> duplicates = new TreeMap<>();
+        for (Map.Entry<String, List<File>> entry : byName.entrySet()) {
+            if (entry.getValue().size() > 1) {
+                duplicates.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+            }
+        }
+        return duplicates;
+    }
+
+    private static String key(String fileName) {
+        return fileName.toLowerCase(Locale.ROOT);
+    }
+}
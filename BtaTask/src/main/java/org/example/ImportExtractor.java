@@ -0,0 +1,47 @@
+package org.example;
+
+import org.example.errors.XMLFileReadingException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Finds import references in a single XML entry
+ */
+public interface ImportExtractor {
+    /**
+     * Extracts imports from XML entry
+     * @param entryName name of the entry, used in "(from entry)" attribution
+     * @param source opens entry content, may be called more than once
+     * @return list of imports mentioned in the entry
+     * @throws XMLFileReadingException when entry can not be parsed
+     */
+    List<String> extractImports(String entryName, Source source) throws XMLFileReadingException;
+
+    /**
+     * Opens a fresh stream with entry content
+     */
+    @FunctionalInterface
+    interface Source {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Creates extractor by name
+     * @param type dom, stax or compare (runs both and reports differences)
+     * @return extractor
+     */
+    static ImportExtractor create(String type) {
+        if (type == null || type.isEmpty() || type.equalsIgnoreCase("dom")) {
+            return new DomImportExtractor();
+        }
+        if (type.equalsIgnoreCase("stax")) {
+            return new StaxImportExtractor();
+        }
+        if (type.equalsIgnoreCase("compare")) {
+            return new ComparingImportExtractor(new DomImportExtractor(), new StaxImportExtractor());
+        }
+        throw new IllegalArgumentException("Unknown import extractor: " + type);
+    }
+}
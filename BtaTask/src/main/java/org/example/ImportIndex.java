@@ -0,0 +1,167 @@
+package org.example;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On-disk cache of extracted imports.
+ * Each odt file is stored with its size and modification time, so a file is parsed again only when it changes.
+ */
+public class ImportIndex {
+    public static final String DEFAULT_FILE_NAME = ".odt-import-index.json";
+    private static final int VERSION = 1;
+
+    private final File indexFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Scan settings the cached results were produced with
+    private String settings = "";
+
+    /**
+     * Cached imports of a single file
+     */
+    private record Entry(long size, long modified, List<String> imports) {
+    }
+
+    private ImportIndex(File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * @return file the index is saved to
+     */
+    public File getFile() {
+        return indexFile;
+    }
+
+    /**
+     * Loads index from file. Missing or unreadable index gives an empty one.
+     * @param indexFile index file
+     * @return loaded index
+     */
+    public static ImportIndex load(File indexFile) {
+        ImportIndex index = new ImportIndex(indexFile);
+        if (!indexFile.exists()) {
+            return index;
+        }
+
+        try {
+            JSONObject json = new JSONObject(Files.readString(indexFile.toPath(), StandardCharsets.UTF_8));
+            if (json.optInt("version") != VERSION) {
+                return index;
+            }
+
+            index.settings = json.optString("settings", "");
+            JSONObject files = json.getJSONObject("files");
+            for (String path : files.keySet()) {
+                JSONObject file = files.getJSONObject(path);
+                JSONArray importsJson = file.getJSONArray("imports");
+                List<String> imports = new ArrayList<>(importsJson.length());
+                for (int i = 0; i < importsJson.length(); i++) {
+                    imports.add(importsJson.getString(i));
+                }
+                index.entries.put(path, new Entry(file.getLong("size"), file.getLong("modified"), imports));
+            }
+        } catch (IOException | JSONException e) {
+            System.err.println("Ignoring unreadable import index " + indexFile + ": " + e.getMessage());
+            index.entries.clear();
+        }
+        return index;
+    }
+
+    /**
+     * Drops cached results when they were produced with different scan settings
+     * @param scanSettings description of settings which change extracted imports
+     */
+    public void useSettings(String scanSettings) {
+        if (!settings.equals(scanSettings)) {
+            entries.clear();
+            settings = scanSettings;
+        }
+    }
+
+    /**
+     * Returns cached imports when file did not change since it was indexed
+     * @param file odt file
+     * @param size current file size
+     * @param modified current modification time
+     * @return imports or null when file has to be parsed
+     */
+    public List<String> get(File file, long size, long modified) {
+        Entry entry = entries.get(file.getAbsolutePath());
+        if (entry == null || entry.size() != size || entry.modified() != modified) {
+            return null;
+        }
+        return entry.imports();
+    }
+
+    /**
+     * Stores imports of a file
+     * @param file odt file
+     * @param size file size before it was parsed
+     * @param modified modification time before it was parsed
+     * @param imports extracted imports
+     */
+    public void put(File file, long size, long modified, List<String> imports) {
+        entries.put(file.getAbsolutePath(), new Entry(size, modified, List.copyOf(imports)));
+    }
+
+    /**
+     * Removes files which no longer exist in scanned folder
+     * @param files files found by the scan
+     */
+    public void retain(Collection<File> files) {
+        Set<String> paths = new HashSet<>();
+        for (File file : files) {
+            paths.add(file.getAbsolutePath());
+        }
+        entries.keySet().retainAll(paths);
+    }
+
+    /**
+     * Removes single file
+     * @param file deleted odt file
+     */
+    public void remove(File file) {
+        entries.remove(file.getAbsolutePath());
+    }
+
+    /**
+     * Writes index to disk. Written to a temporary file first, so a crash never leaves half written index.
+     * @throws IOException throws exception on error
+     */
+    public void save() throws IOException {
+        JSONObject files = new JSONObject();
+        for (Map.Entry<String, Entry> entry : new TreeMap<>(entries).entrySet()) {
+            JSONObject file = new JSONObject();
+            file.put("size", entry.getValue().size());
+            file.put("modified", entry.getValue().modified());
+            file.put("imports", new JSONArray(entry.getValue().imports()));
+            files.put(entry.getKey(), file);
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("version", VERSION);
+        json.put("settings", settings);
+        json.put("files", files);
+
+        File tempFile = new File(indexFile.getAbsolutePath() + ".tmp");
+        Files.writeString(tempFile.toPath(), json.toString(), StandardCharsets.UTF_8);
+        Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @return number of indexed files
+     */
+    public int size() {
+        return entries.size();
+    }
+}
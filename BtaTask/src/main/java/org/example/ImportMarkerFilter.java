@@ -0,0 +1,224 @@
+package org.example;
+
+import org.example.errors.XMLFileReadingException;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Skips parsing of entries which can not contain an import.
+ * Entry bytes are searched for "[import" with Boyer-Moore-Horspool while they are inflated, the wrapped extractor
+ * then reads the entry again only on a hit, so entries are never held in memory.
+ * Entries with character references (&amp;#...), a DOCTYPE which may declare entities, or not in UTF-8
+ * are always parsed, because the marker could be written there without its plain bytes. Skipped entries are not checked for being well formed.
+ */
+public class ImportMarkerFilter implements ImportExtractor {
+    private static final byte[] MARKER = "[import".getBytes(StandardCharsets.US_ASCII);
+    // Horspool shift for each byte value
+    private static final int[] SHIFT = buildShiftTable(MARKER);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ImportExtractor extractor;
+
+    private final AtomicLong entriesParsed = new AtomicLong();
+    private final AtomicLong entriesSkipped = new AtomicLong();
+    private final AtomicLong bytesParsed = new AtomicLong();
+    private final AtomicLong bytesSkipped = new AtomicLong();
+
+    /**
+     * @param extractor extractor used for entries which may contain imports
+     */
+    public ImportMarkerFilter(ImportExtractor extractor) {
+        this.extractor = extractor;
+    }
+
+    @Override
+    public List<String> extractImports(String entryName, Source source) throws XMLFileReadingException {
+        long skippedBytes;
+        try (InputStream in = source.open()) {
+            skippedBytes = scan(in);
+        } catch (IOException e) {
+            throw new XMLFileReadingException("Error reading " + entryName + ": ", e);
+        }
+
+        if (skippedBytes >= 0) {
+            entriesSkipped.incrementAndGet();
+            bytesSkipped.addAndGet(skippedBytes);
+            Metrics.get().increment(Metrics.ENTRIES_SKIPPED, 1);
+            return new ArrayList<>();
+        }
+
+        entriesParsed.incrementAndGet();
+        // Entry is read again from the start, bytes are counted as the extractor reads them
+        return extractor.extractImports(entryName, () -> new FilterInputStream(source.open()) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    bytesParsed.incrementAndGet();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    bytesParsed.addAndGet(read);
+                }
+                return read;
+            }
+        });
+    }
+
+    /**
+     * Checks if XML content may contain an import
+     * @param content raw entry bytes
+     * @return false only when parsing can not find any import
+     */
+    static boolean mayContainImport(byte[] content) {
+        try {
+            return scan(new ByteArrayInputStream(content)) < 0;
+        } catch (IOException e) {
+            // Reading from memory does not throw
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Searches stream chunk by chunk, the last bytes of each chunk are kept in front of the next one,
+     * so a marker or reference split between chunks is found. Stops at the first hit.
+     * @param in entry content
+     * @return number of bytes read when no import is possible, -1 when the entry has to be parsed
+     * @throws IOException when stream can not be read
+     */
+    private static long scan(InputStream in) throws IOException {
+        int keep = MARKER.length - 1;
+        byte[] buffer = new byte[keep + BUFFER_SIZE];
+        int carried = 0;
+        long total = 0;
+        boolean first = true;
+        int read;
+        while ((read = in.readNBytes(buffer, carried, buffer.length - carried)) > 0) {
+            int length = carried + read;
+            total += read;
+            if ((first && !isUtf8Compatible(buffer, length)) || indexOfMarker(buffer, length) >= 0
+                    || hasReference(buffer, length)) {
+                return -1;
+            }
+            first = false;
+            carried = Math.min(keep, length);
+            System.arraycopy(buffer, length - carried, buffer, 0, carried);
+        }
+        return total;
+    }
+
+    /**
+     * Finds import marker with Boyer-Moore-Horspool
+     * @param data bytes to search
+     * @return index of first marker or -1
+     */
+    static int indexOfMarker(byte[] data) {
+        return indexOfMarker(data, data.length);
+    }
+
+    private static int indexOfMarker(byte[] data, int length) {
+        int last = MARKER.length - 1;
+        int i = 0;
+        while (i <= length - MARKER.length) {
+            int j = last;
+            while (data[i + j] == MARKER[j]) {
+                if (j == 0) {
+                    return i;
+                }
+                j--;
+            }
+            i += SHIFT[data[i + last] & 0xFF];
+        }
+        return -1;
+    }
+
+    /**
+     * @return true when content has "&#" or "<!D", which may spell the marker through references
+     */
+    private static boolean hasReference(byte[] content, int length) {
+        for (int i = 0; i < length - 1; i++) {
+            if (content[i] == '&' && content[i + 1] == '#') {
+                return true;
+            }
+            if (content[i] == '<' && content[i + 1] == '!' && i + 2 < length && content[i + 2] == 'D') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * UTF-16 and UTF-32 content starts with a byte order mark or a zero byte next to "<"
+     */
+    static boolean isUtf8Compatible(byte[] content) {
+        return isUtf8Compatible(content, content.length);
+    }
+
+    private static boolean isUtf8Compatible(byte[] content, int length) {
+        if (length < 2) {
+            return true;
+        }
+        int first = content[0] & 0xFF;
+        int second = content[1] & 0xFF;
+        return first != 0 && second != 0 && !(first == 0xFE && second == 0xFF) && !(first == 0xFF && second == 0xFE);
+    }
+
+    private static int[] buildShiftTable(byte[] pattern) {
+        int[] shift = new int[256];
+        Arrays.fill(shift, pattern.length);
+        for (int i = 0; i < pattern.length - 1; i++) {
+            shift[pattern[i] & 0xFF] = pattern.length - 1 - i;
+        }
+        return shift;
+    }
+
+    /**
+     * @return number of entries passed to the extractor
+     */
+    public long getEntriesParsed() {
+        return entriesParsed.get();
+    }
+
+    /**
+     * @return number of entries skipped without parsing
+     */
+    public long getEntriesSkipped() {
+        return entriesSkipped.get();
+    }
+
+    /**
+     * @return inflated bytes of parsed entries
+     */
+    public long getBytesParsed() {
+        return bytesParsed.get();
+    }
+
+    /**
+     * @return inflated bytes of skipped entries
+     */
+    public long getBytesSkipped() {
+        return bytesSkipped.get();
+    }
+
+    /**
+     * @return one line summary of counters
+     */
+    public String summary() {
+        return "Pre-filter skipped " + getEntriesSkipped() + " of " + (getEntriesSkipped() + getEntriesParsed())
+                + " XML entries (" + getBytesSkipped() + " of " + (getBytesSkipped() + getBytesParsed()) + " bytes)";
+    }
+}
@@ -0,0 +1,231 @@
+package org.example;
+
+import org.example.errors.ImportMappingException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Replaces many imports in one pass over the text using Aho-Corasick automaton.
+ * Matches are replaced leftmost first, longest one wins when several start at the same position,
+ * and replaced text is not matched again, so renames like a -> b, b -> c do not chain.
+ * With a single import it gives the same result as String.replace.
+ */
+public class ImportMatcher {
+    private static final String MAPPING_SEPARATOR = "=>";
+
+    // Automaton nodes, 0 is root
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+    private final List<Integer> failure = new ArrayList<>();
+    private final List<Integer> depth = new ArrayList<>();
+    // Index of pattern ending in node, -1 if none
+    private final List<Integer> patternAt = new ArrayList<>();
+    // Nearest node on failure chain which ends a pattern, -1 if none
+    private final List<Integer> outputLink = new ArrayList<>();
+
+    private final List<String> patterns = new ArrayList<>();
+    private final List<String> replacements = new ArrayList<>();
+
+    /**
+     * @param mappings old import -> new import
+     */
+    public ImportMatcher(Map<String, String> mappings) {
+        addNode(0);
+        for (Map.Entry<String, String> mapping : mappings.entrySet()) {
+            if (mapping.getKey().isEmpty()) {
+                throw new IllegalArgumentException("Import to replace can not be empty");
+            }
+            addPattern(mapping.getKey(), mapping.getValue());
+        }
+        buildFailureLinks();
+    }
+
+    /**
+     * Creates matcher for a single replacement
+     * @param oldImport import to change
+     * @param newImport new import
+     * @return matcher
+     */
+    public static ImportMatcher of(String oldImport, String newImport) {
+        return new ImportMatcher(Map.of(oldImport, newImport));
+    }
+
+    /**
+     * Replaces all imports in text
+     * @param text text to search
+     * @return text with replaced imports, the same instance when nothing matched
+     */
+    public String replace(String text) {
+        StringBuilder result = null;
+        int copiedUntil = 0;
+        int state = 0;
+        // Best match found so far which is not replaced yet
+        int matchStart = -1;
+        int matchEnd = -1;
+        int matchPattern = -1;
+
+        int i = 0;
+        while (i < text.length() || matchPattern >= 0) {
+            if (i < text.length()) {
+                state = next(state, text.charAt(i));
+            }
+
+            // At the end of text, or no match in progress can start at or before matchStart any more
+            if (matchPattern >= 0 && (i == text.length() || matchStart < i - depth.get(state) + 1)) {
+                if (result == null) {
+                    result = new StringBuilder(text.length() + 16);
+                }
+                result.append(text, copiedUntil, matchStart).append(replacements.get(matchPattern));
+                copiedUntil = matchEnd;
+                // Continue right after the replaced text from the root
+                i = matchEnd;
+                state = 0;
+                matchPattern = -1;
+                continue;
+            }
+
+            int node = patternAt.get(state) >= 0 ? state : outputLink.get(state);
+            for (; node > 0; node = outputLink.get(node)) {
+                int pattern = patternAt.get(node);
+                int start = i - patterns.get(pattern).length() + 1;
+                if (matchPattern < 0 || start < matchStart || (start == matchStart && i + 1 > matchEnd)) {
+                    matchStart = start;
+                    matchEnd = i + 1;
+                    matchPattern = pattern;
+                }
+            }
+            i++;
+        }
+
+        if (result == null) {
+            return text;
+        }
+        return result.append(text, copiedUntil, text.length()).toString();
+    }
+
+    /**
+     * @return imports which are replaced
+     */
+    public Set<String> getImports() {
+        return new LinkedHashSet<>(patterns);
+    }
+
+    /**
+     * @return replacements as "old import => new import" lines in the order they were added
+     */
+    public String describe() {
+        StringJoiner description = new StringJoiner("\n");
+        for (int i = 0; i < patterns.size(); i++) {
+            description.add(patterns.get(i) + " " + MAPPING_SEPARATOR + " " + replacements.get(i));
+        }
+        return description.toString();
+    }
+
+    /**
+     * Loads mapping table. Each line contains "old import => new import",
+     * empty lines and lines starting with # are ignored.
+     * @param mappingFile mapping file
+     * @return old import -> new import in file order
+     * @throws ImportMappingException when file can not be read or contains invalid line
+     */
+    public static Map<String, String> loadMappings(File mappingFile) throws ImportMappingException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(mappingFile.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new ImportMappingException("Problems with the mapping file: " + mappingFile, e);
+        }
+        return parseMappings(lines, mappingFile.getPath());
+    }
+
+    /**
+     * Parses mapping table lines, same format as mapping file
+     * @param lines "old import => new import" lines
+     * @param sourceName where lines come from, used in error messages
+     * @return old import -> new import in line order
+     * @throws ImportMappingException when a line is invalid
+     */
+    public static Map<String, String> parseMappings(List<String> lines, String sourceName) throws ImportMappingException {
+        Map<String, String> mappings = new LinkedHashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            int separator = line.indexOf(MAPPING_SEPARATOR);
+            if (separator <= 0) {
+                throw new ImportMappingException("Invalid mapping on line " + (i + 1) + " of " + sourceName
+                        + ", expected: old import " + MAPPING_SEPARATOR + " new import");
+            }
+            String oldImport = line.substring(0, separator).trim();
+            String newImport = line.substring(separator + MAPPING_SEPARATOR.length()).trim();
+            String previous = mappings.put(oldImport, newImport);
+            if (previous != null && !previous.equals(newImport)) {
+                throw new ImportMappingException("Conflicting mapping for " + oldImport + " on line " + (i + 1)
+                        + " of " + sourceName);
+            }
+        }
+        return mappings;
+    }
+
+    private int next(int state, char c) {
+        while (true) {
+            Integer target = transitions.get(state).get(c);
+            if (target != null) {
+                return target;
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = failure.get(state);
+        }
+    }
+
+    private int addNode(int nodeDepth) {
+        transitions.add(new HashMap<>());
+        failure.add(0);
+        depth.add(nodeDepth);
+        patternAt.add(-1);
+        outputLink.add(-1);
+        return transitions.size() - 1;
+    }
+
+    private void addPattern(String pattern, String replacement) {
+        int state = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            Integer target = transitions.get(state).get(pattern.charAt(i));
+            if (target == null) {
+                target = addNode(i + 1);
+                transitions.get(state).put(pattern.charAt(i), target);
+            }
+            state = target;
+        }
+        patternAt.set(state, patterns.size());
+        patterns.add(pattern);
+        replacements.add(replacement);
+    }
+
+    private void buildFailureLinks() {
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : transitions.get(0).values()) {
+            failure.set(child, 0);
+            queue.add(child);
+        }
+
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            int fail = failure.get(node);
+            outputLink.set(node, patternAt.get(fail) >= 0 ? fail : outputLink.get(fail));
+
+            for (Map.Entry<Character, Integer> edge : transitions.get(node).entrySet()) {
+                int child = edge.getValue();
+                failure.set(child, next(fail, edge.getKey()));
+                queue.add(child);
+            }
+        }
+    }
+}
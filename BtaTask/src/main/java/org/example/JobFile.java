@@ -0,0 +1,181 @@
+package org.example;
+
+import org.example.errors.ImportMappingException;
+import org.example.errors.JobFileException;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Scan and rewrite jobs of a single run, loaded from a JSON file on the filesystem:
+ * <pre>
+ * {"jobs": [
+ *   {"name": "report", "type": "scan", "folderPath": "templates", "reportOutput": "report.json"},
+ *   {"name": "rename", "type": "rewrite", "folderPath": "templates", "oldImport": "[import a.odt]",
+ *    "newImport": "[import b.odt]", "odtFile": "footer_1.odt"},
+ *   {"name": "renames", "type": "rewrite", "folderPath": "blocks", "mappingFile": "renames.txt"}
+ * ]}
+ * </pre>
+ * Relative paths are resolved against the folder of the job file.
+ * Rewrite jobs without odtFile change every file in the folder.
+ */
+public class JobFile {
+    public static final String SCAN = "scan";
+    public static final String REWRITE = "rewrite";
+
+    private JobFile() {
+    }
+
+    /**
+     * Single job of the job file
+     * @param name job name, used for logging
+     * @param type scan or rewrite
+     * @param folder folder the job works on
+     * @param reportOutput report file of a scan job, empty writes to console
+     * @param reportFormat json or ndjson
+     * @param reportGzip compresses report with gzip
+     * @param mappings old import -> new import of a rewrite job
+     * @param odtFile name of the only file a rewrite job changes, null changes all files
+     */
+    public record Job(String name, String type, Path folder, String reportOutput, String reportFormat,
+                      boolean reportGzip, Map<String, String> mappings, String odtFile) {
+    }
+
+    /**
+     * Loads and checks jobs
+     * @param jobFile job file
+     * @return jobs in file order
+     * @throws JobFileException when file can not be read, or a job is incomplete or conflicts with another job
+     */
+    public static List<Job> load(File jobFile) throws JobFileException {
+        Path base = jobFile.getAbsoluteFile().toPath().getParent();
+        JSONArray jobsJson;
+        try {
+            jobsJson = new JSONObject(Files.readString(jobFile.toPath(), StandardCharsets.UTF_8)).getJSONArray("jobs");
+        } catch (IOException | JSONException e) {
+            throw new JobFileException("Could not read job file " + jobFile + ": " + e.getMessage(), e);
+        }
+
+        List<Job> jobs = new ArrayList<>(jobsJson.length());
+        for (int i = 0; i < jobsJson.length(); i++) {
+            try {
+                jobs.add(parseJob(jobsJson.getJSONObject(i), "job " + (i + 1), base));
+            } catch (JSONException e) {
+                throw new JobFileException("Invalid job " + (i + 1) + " in " + jobFile + ": " + e.getMessage(), e);
+            }
+        }
+        checkConflicts(jobs);
+        return jobs;
+    }
+
+    private static Job parseJob(JSONObject json, String defaultName, Path base) throws JobFileException {
+        String name = json.optString("name", defaultName);
+        String folderPath = json.optString("folderPath", "");
+        if (folderPath.isEmpty()) {
+            throw new JobFileException("Job " + name + " has no folderPath");
+        }
+        Path folder = base.resolve(folderPath).normalize();
+        String type = json.optString("type", "");
+
+        if (type.equals(SCAN)) {
+            String output = json.optString("reportOutput", "");
+            return new Job(name, type, folder, output.isEmpty() ? "" : base.resolve(output).toString(),
+                    reportFormat(json, name), json.optBoolean("reportGzip", false), Map.of(), null);
+        }
+        if (!type.equals(REWRITE)) {
+            throw new JobFileException("Job " + name + " has unknown type: " + type);
+        }
+
+        Map<String, String> mappings = new LinkedHashMap<>();
+        if (json.has("oldImport")) {
+            mappings.put(json.getString("oldImport"), json.getString("newImport"));
+        }
+        JSONObject inline = json.optJSONObject("mappings");
+        if (inline != null) {
+            for (String oldImport : inline.keySet()) {
+                mappings.put(oldImport, inline.getString(oldImport));
+            }
+        }
+        if (json.has("mappingFile")) {
+            try {
+                mappings.putAll(ImportMatcher.loadMappings(base.resolve(json.getString("mappingFile")).toFile()));
+            } catch (ImportMappingException e) {
+                throw new JobFileException("Job " + name + ": " + e.getMessage(), e);
+            }
+        }
+        if (mappings.isEmpty() || mappings.containsKey("")) {
+            throw new JobFileException("Job " + name + " has no imports to replace");
+        }
+        String odtFile = json.optString("odtFile", "");
+        return new Job(name, type, folder, "", "", false, Collections.unmodifiableMap(mappings),
+                odtFile.isEmpty() ? null : odtFile);
+    }
+
+    /**
+     * @return report format of a scan job
+     * @throws JobFileException when format is unknown
+     */
+    private static String reportFormat(JSONObject json, String name) throws JobFileException {
+        try {
+            return ReportWriter.checkFormat(json.optString("reportFormat", "json"));
+        } catch (IllegalArgumentException e) {
+            throw new JobFileException("Job " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Rewrite jobs of one file are applied in a single pass, so they may not map the same import differently,
+     * and one job may not replace an import which another job writes, as that would need a second pass
+     */
+    private static void checkConflicts(List<Job> jobs) throws JobFileException {
+        List<Job> rewrites = jobs.stream().filter(job -> job.type().equals(REWRITE)).toList();
+        for (int i = 0; i < rewrites.size(); i++) {
+            for (int j = i + 1; j < rewrites.size(); j++) {
+                Job first = rewrites.get(i);
+                Job second = rewrites.get(j);
+                if (!nested(first.folder(), second.folder()) || (first.odtFile() != null && second.odtFile() != null
+                        && !first.odtFile().equalsIgnoreCase(second.odtFile()))) {
+                    continue;
+                }
+                for (Map.Entry<String, String> mapping : first.mappings().entrySet()) {
+                    String other = second.mappings().get(mapping.getKey());
+                    if (other != null && !other.equals(mapping.getValue())) {
+                        throw new JobFileException("Jobs " + first.name() + " and " + second.name() + " replace "
+                                + mapping.getKey() + " differently in " + first.folder());
+                    }
+                }
+                checkChain(first, second);
+                checkChain(second, first);
+            }
+        }
+    }
+
+    /**
+     * @return true when the folders are the same or one contains the other, so their jobs can involve the same files
+     */
+    private static boolean nested(Path first, Path second) {
+        Path a = first.toAbsolutePath();
+        Path b = second.toAbsolutePath();
+        return a.startsWith(b) || b.startsWith(a);
+    }
+
+    /**
+     * Rejects a later job replacing an import which an earlier job writes
+     */
+    private static void checkChain(Job writer, Job reader) throws JobFileException {
+        for (Map.Entry<String, String> mapping : writer.mappings().entrySet()) {
+            String next = reader.mappings().get(mapping.getValue());
+            if (next != null && !next.equals(mapping.getValue())) {
+                throw new JobFileException("Job " + reader.name() + " replaces " + mapping.getValue() + " which job "
+                        + writer.name() + " writes in " + writer.folder() + ", chained jobs are not supported");
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs jobs of a job file. Jobs are grouped by folder, jobs of nested folders join the group of the outermost one,
+ * so each folder is walked once and each document is opened once for all jobs which involve it:
+ * its imports are read for every scan job and all rewrite jobs of the document are applied together in the same pass.
+ * Scan jobs report imports as they were before rewrite jobs of the same run.
+ */
+public class JobRunner {
+    private static final ImportMatcher NO_REPLACEMENTS = new ImportMatcher(Map.of());
+
+    private final RewriteOptions options;
+    private final ExecutorService executor;
+
+    /**
+     * @param options entry selection, dry run, compression, walker and rewriter used by all jobs
+     * @param executor executor used to process files in parallel, null to process on calling thread
+     */
+    public JobRunner(RewriteOptions options, ExecutorService executor) {
+        this.options = options;
+        this.executor = executor;
+    }
+
+    /**
+     * Result of processing a single document
+     * @param imports imports for scan jobs, null when the document failed or no scan job needs them
+     * @param rewrite rewrite result, null when no rewrite job involves the document
+     */
+    private record FileResult(List<String> imports, RewriteResult rewrite) {
+    }
+
+    /**
+     * Runs all jobs, folders in the order of their first job.
+     * Walk settings such as maxDepth count from the outermost folder of a group.
+     * @param jobs jobs to run
+     * @throws IOException when a report can not be written
+     * @throws InterruptedException when interrupted while waiting for files
+     */
+    public void run(List<JobFile.Job> jobs) throws IOException, InterruptedException {
+        Map<Path, List<JobFile.Job>> byFolder = new LinkedHashMap<>();
+        for (JobFile.Job job : jobs) {
+            byFolder.computeIfAbsent(outermostFolder(job, jobs), folder -> new ArrayList<>()).add(job);
+        }
+        for (Map.Entry<Path, List<JobFile.Job>> entry : byFolder.entrySet()) {
+            if (!Files.isDirectory(entry.getKey())) {
+                System.err.println("Folder does not exist, skipping " + entry.getValue().size() + " jobs: "
+                        + entry.getKey());
+                continue;
+            }
+            runFolder(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * @return folder of a job or of another job which contains it, whichever is outermost
+     */
+    private static Path outermostFolder(JobFile.Job job, List<JobFile.Job> jobs) {
+        Path outermost = job.folder().toAbsolutePath();
+        for (JobFile.Job other : jobs) {
+            Path folder = other.folder().toAbsolutePath();
+            if (outermost.startsWith(folder)) {
+                outermost = folder;
+            }
+        }
+        return outermost;
+    }
+
+    /**
+     * @return true when the file is in the folder of the job or below it
+     */
+    private static boolean covers(JobFile.Job job, File file) {
+        return file.toPath().toAbsolutePath().startsWith(job.folder().toAbsolutePath());
+    }
+
+    /**
+     * Runs jobs of one folder and its sub folders over a single walk
+     */
+    private void runFolder(Path folder, List<JobFile.Job> jobs) throws IOException, InterruptedException {
+        System.out.println("Running " + jobs.size() + " jobs in " + folder);
+        FileCatalog catalog = FileCatalog.build(options.walker(), folder);
+
+        List<JobFile.Job> scanJobs = new ArrayList<>();
+        List<JobFile.Job> folderRewrites = new ArrayList<>();
+        Map<File, List<JobFile.Job>> fileRewrites = new HashMap<>();
+        for (JobFile.Job job : jobs) {
+            if (job.type().equals(JobFile.SCAN)) {
+                scanJobs.add(job);
+            } else if (job.odtFile() == null) {
+                folderRewrites.add(job);
+            } else {
+                File target = findTarget(catalog, job);
+                if (target != null) {
+                    fileRewrites.computeIfAbsent(target, file -> new ArrayList<>()).add(job);
+                }
+            }
+        }
+
+        // Documents with the same set of rewrite jobs share one matcher
+        Map<List<JobFile.Job>, ImportMatcher> matchers = new HashMap<>();
+        List<File> files = new ArrayList<>();
+        List<ImportMatcher> fileMatchers = new ArrayList<>();
+        List<Boolean> fileScanned = new ArrayList<>();
+        for (File file : catalog.files()) {
+            List<JobFile.Job> rewrites = new ArrayList<>();
+            for (JobFile.Job job : folderRewrites) {
+                if (covers(job, file)) {
+                    rewrites.add(job);
+                }
+            }
+            rewrites.addAll(fileRewrites.getOrDefault(file, List.of()));
+            boolean scanned = scanJobs.stream().anyMatch(job -> covers(job, file));
+            if (rewrites.isEmpty() && !scanned) {
+                continue;
+            }
+            files.add(file);
+            fileMatchers.add(rewrites.isEmpty() ? null : matchers.computeIfAbsent(rewrites, JobRunner::combine));
+            fileScanned.add(scanned);
+        }
+
+        List<ReportWriter> reports = new ArrayList<>();
+        List<RewriteResult> results = new ArrayList<>();
+        List<Future<FileResult>> futures = new ArrayList<>();
+        try {
+            for (JobFile.Job job : scanJobs) {
+                reports.add(ReportWriter.create(job.reportFormat(), job.reportOutput(), job.reportGzip()));
+            }
+            if (executor != null) {
+                for (int i = 0; i < files.size(); i++) {
+                    File file = files.get(i);
+                    ImportMatcher matcher = fileMatchers.get(i);
+                    boolean readImports = fileScanned.get(i);
+                    futures.add(executor.submit(() -> processFile(file, matcher, readImports)));
+                }
+            }
+            // Results are taken in walk order, so reports are sorted by path like a single scan
+            for (int i = 0; i < files.size(); i++) {
+                File file = files.get(i);
+                FileResult result;
+                if (executor == null) {
+                    result = processFile(file, fileMatchers.get(i), fileScanned.get(i));
+                } else {
+                    try {
+                        result = futures.get(i).get();
+                    } catch (ExecutionException e) {
+                        result = new FileResult(null, fileMatchers.get(i) == null ? null
+                                : new RewriteResult(file, 0, e.getCause().getMessage()));
+                    }
+                }
+                if (result.imports() != null) {
+                    for (int j = 0; j < scanJobs.size(); j++) {
+                        if (covers(scanJobs.get(j), file)) {
+                            reports.get(j).fileScanned(file, result.imports());
+                        }
+                    }
+                }
+                if (result.rewrite() != null) {
+                    results.add(result.rewrite());
+                }
+            }
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+            for (ReportWriter report : reports) {
+                report.close();
+            }
+        }
+
+        if (!folderRewrites.isEmpty() || !fileRewrites.isEmpty()) {
+            ODTEditor.printSummary(results, options.dryRun());
+        }
+    }
+
+    /**
+     * Finds the only file in the folder of a rewrite job it changes, ambiguous names are reported and not edited
+     * @return file, null when it is not found or the name is not unique
+     */
+    private static File findTarget(FileCatalog catalog, JobFile.Job job) {
+        List<File> found = catalog.find(job.odtFile()).stream().filter(file -> covers(job, file)).toList();
+        if (found.isEmpty()) {
+            System.err.println("Job " + job.name() + ": ODT file not found: " + job.odtFile());
+            return null;
+        }
+        if (found.size() > 1) {
+            System.err.println("Job " + job.name() + ": several ODT files are named " + job.odtFile()
+                    + ", none was modified:");
+            for (File duplicate : found) {
+                System.err.println("  " + duplicate.getAbsolutePath());
+            }
+            return null;
+        }
+        return found.get(0);
+    }
+
+    /**
+     * @return matcher applying mappings of all jobs in job order
+     */
+    private static ImportMatcher combine(List<JobFile.Job> jobs) {
+        Map<String, String> mappings = new LinkedHashMap<>();
+        for (JobFile.Job job : jobs) {
+            mappings.putAll(job.mappings());
+        }
+        return new ImportMatcher(mappings);
+    }
+
+    /**
+     * Opens document once, reads its imports when needed and applies rewrite jobs in the same pass
+     * @param matcher replacements of all rewrite jobs of the document, null when only scanned
+     * @param readImports imports are needed by scan jobs
+     */
+    private FileResult processFile(File file, ImportMatcher matcher, boolean readImports) {
+        try {
+            if (!readImports) {
+                return new FileResult(null, new RewriteResult(file, ODTEditor.rewriteOdt(file, matcher, options), null));
+            }
+            ODTEditor.ReadResult read = ODTEditor.readAndRewrite(file,
+                    matcher == null ? NO_REPLACEMENTS : matcher, options);
+            return new FileResult(read.imports(),
+                    matcher == null ? null : new RewriteResult(file, read.replacements(), null));
+        } catch (Exception e) {
+            Metrics.get().error(e);
+            System.err.println("Error processing " + file.getAbsolutePath() + ": " + e.getMessage());
+            return new FileResult(null, matcher == null ? null
+                    : new RewriteResult(file, 0, "Error rewriting " + file.getName() + ": " + e.getMessage()));
+        }
+    }
+}
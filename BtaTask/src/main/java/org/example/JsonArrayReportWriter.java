@@ -0,0 +1,71 @@
+package org.example;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes pretty printed JSON array, formatted exactly like JSONArray.toString(2),
+ * but each file is written as soon as it is scanned
+ */
+public class JsonArrayReportWriter implements ReportWriter {
+    private static final int INDENT = 2;
+
+    private final Writer writer;
+    // JSONArray writes a single element without line breaks, so first one waits for the second
+    private JSONObject first;
+    private int count;
+
+    public JsonArrayReportWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void fileScanned(File file, List<String> imports) throws IOException {
+        JSONObject fileData = new JSONObject();
+        fileData.put("file", file.getName());
+        fileData.put("imports", new JSONArray(imports));
+
+        count++;
+        if (count == 1) {
+            first = fileData;
+            return;
+        }
+        if (count == 2) {
+            writer.write('[');
+            writeElement(first);
+            first = null;
+        }
+        writer.write(',');
+        writeElement(fileData);
+        writer.flush();
+    }
+
+    private void writeElement(JSONObject fileData) throws IOException {
+        writer.write('\n');
+        writer.write(" ".repeat(INDENT));
+        fileData.write(writer, INDENT, INDENT);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (count == 0) {
+                writer.write("[]");
+            } else if (count == 1) {
+                writer.write('[');
+                first.write(writer, INDENT, 0);
+                writer.write(']');
+            } else {
+                writer.write("\n]");
+            }
+            writer.write('\n');
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -1,11 +1,26 @@
 package org.example;
 
+import org.example.errors.ImportMappingException;
 import org.example.errors.InvalidFolderPathException;
 import org.example.errors.InvalidODTFileNameException;
+import org.example.errors.JobFileException;
 import org.example.errors.PropertiesLoadException;
+import org.example.errors.ShardMergeException;
+import org.json.JSONArray;
+import org.json.JSONObject;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
 
 public class Main {
     public static void main(String[] args) {
@@ -13,30 +28,274 @@ public class Main {
             // loads the properties
             Validator validator = new Validator();
             Properties properties = PropertiesLoader.loadProperties("config.properties");
+            // key=value arguments override config.properties, e.g. shardIndex of each worker process
+            PropertiesLoader.applyOverrides(properties, args);
 
             String folderPath = properties.getProperty("folderPath");
             File odtFile = new File(properties.getProperty("odtFile"));
             String oldImport = properties.getProperty("oldImport");
             String newImport = properties.getProperty("newImport");
+            // single edits odtFile only, bulk edits every file in folder which contains oldImport
+            boolean bulkEdit = properties.getProperty("editMode", "single").equalsIgnoreCase("bulk");
+            // watch keeps the report up to date instead of editing
+            boolean watch = Boolean.parseBoolean(properties.getProperty("watch", "false"));
+            // serve keeps imports in memory and answers requests on a local port
+            boolean serve = Boolean.parseBoolean(properties.getProperty("serve", "false"));
+            // shardCount above 1 scans only shard shardIndex of the folder and writes partial result instead of editing
+            int shardIndex = PropertiesLoader.getInt(properties, "shardIndex", 0);
+            int shardCount = PropertiesLoader.getInt(properties, "shardCount", 1);
+            if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+                throw new PropertiesLoadException("Property shardIndex must be from 0 to shardCount - 1 and shardCount "
+                        + "at least 1, was: shardIndex=" + shardIndex + ", shardCount=" + shardCount);
+            }
+            // Checked before anything is scanned, the report is written at the end or by the watcher
+            PropertiesLoader.getSetting(properties, "reportFormat", "json", ReportWriter::checkFormat);
+            // mergeShards combines partial results of all shards into the report
+            String mergeShards = properties.getProperty("mergeShards", "");
+            // jobFile runs scan and rewrite jobs over many folders instead of folderPath, odtFile and imports above
+            String jobFile = properties.getProperty("jobFile", "");
 
             // Checks if path is valid
-            validator.validateFolderPath(folderPath);
+            if (jobFile.isEmpty()) {
+                validator.validateFolderPath(folderPath);
+            }
+
+            if (!mergeShards.isEmpty()) {
+                List<File> partials = Arrays.stream(mergeShards.split(","))
+                        .map(String::trim)
+                        .filter(path -> !path.isEmpty())
+                        .map(File::new)
+                        .toList();
+                publishReport(properties, ShardResult.merge(partials, folderPath));
+                return;
+            }
 
             // Checks if file is valid
-            validator.validateODTFile(odtFile);
+            if (!bulkEdit && !watch && !serve && shardCount == 1 && jobFile.isEmpty()) {
+                validator.validateODTFile(odtFile);
+            }
+
+            int scanThreads = PropertiesLoader.getInt(properties, "scanThreads", 0);
+            ExecutorService executor = PropertiesLoader.getSetting(properties, "scanExecutor", "serial",
+                    type -> ScanExecutors.create(type, scanThreads));
+            try {
+                // Reads odt files
+                ODTReader reader = new ODTReader(executor);
+                ImportExtractor extractor = PropertiesLoader.getSetting(properties, "extractor", "dom", ImportExtractor::create);
+                // Entries without "[import" are not parsed at all
+                ImportMarkerFilter markerFilter = null;
+                if (Boolean.parseBoolean(properties.getProperty("preFilter", "false"))) {
+                    markerFilter = new ImportMarkerFilter(extractor);
+                    extractor = markerFilter;
+                }
+                reader.setExtractor(extractor);
+                // Only selected xml files of each odt file are parsed
+                EntrySelector selector = EntrySelector.create(properties.getProperty("entryInclude", ""),
+                        properties.getProperty("entryExclude", ""),
+                        Boolean.parseBoolean(properties.getProperty("embeddedObjects", "false")));
+                reader.setEntrySelector(selector);
+                // Decides which files in folderPath are scanned and edited
+                ODTFileWalker walker = ODTFileWalker.create(properties.getProperty("scanInclude", ""),
+                        properties.getProperty("scanExclude", ""),
+                        PropertiesLoader.getInt(properties, "scanMaxDepth", 0),
+                        Boolean.parseBoolean(properties.getProperty("followLinks", "true")),
+                        properties.getProperty("scanExtensions", "odt"));
+                if (shardCount > 1) {
+                    walker = walker.withShard(shardIndex, shardCount);
+                }
+                reader.setWalker(walker);
+                // Reading and parsing run in separate stages with bounded queues between them
+                if (Boolean.parseBoolean(properties.getProperty("scanPipeline", "false"))) {
+                    reader.setPipeline(PropertiesLoader.getInt(properties, "pipelineReadThreads", 0),
+                            PropertiesLoader.getInt(properties, "pipelineParseThreads", 0),
+                            PropertiesLoader.getInt(properties, "pipelineQueueSize", 0),
+                            PropertiesLoader.getInt(properties, "pipelineMemoryMB", 0));
+                }
+                if (Boolean.parseBoolean(properties.getProperty("useIndex", "false"))) {
+                    String indexFile = properties.getProperty("indexFile", "");
+                    // Each shard keeps its own index, a shared one would lose files of the other shards
+                    String defaultName = shardCount > 1
+                            ? ImportIndex.DEFAULT_FILE_NAME + "." + shardIndex + "-of-" + shardCount
+                            : ImportIndex.DEFAULT_FILE_NAME;
+                    reader.setIndex(ImportIndex.load(indexFile.isEmpty()
+                            ? new File(folderPath, defaultName) : new File(indexFile)));
+                }
+
+                // Plain import renames are substituted in entry bytes, other entries are parsed by the rewriter
+                EntryRewriter rewriter = PropertiesLoader.getSetting(properties, "rewriter", "dom", EntryRewriter::create);
+                if (Boolean.parseBoolean(properties.getProperty("byteRewrite", "false"))) {
+                    rewriter = new ByteEntryRewriter(rewriter);
+                }
+
+                // dryRun only prints planned replacements, no file is written
+                RewriteOptions options = new RewriteOptions(selector,
+                        Boolean.parseBoolean(properties.getProperty("dryRun", "false")),
+                        PropertiesLoader.getSetting(properties, "compressionLevels", "", CompressionLevels::parse), walker,
+                        rewriter);
+
+                if (!jobFile.isEmpty()) {
+                    new JobRunner(options, executor).run(JobFile.load(new File(jobFile)));
+                    writeMetrics(properties);
+                    return;
+                }
+
+                if (shardCount > 1) {
+                    String shardOutput = properties.getProperty("shardOutput", "");
+                    ShardResult.write(new File(shardOutput.isEmpty()
+                                    ? ShardResult.defaultFileName(shardIndex, shardCount) : shardOutput),
+                            shardIndex, shardCount, selector.describe(), folderPath, reader.scanODTFiles(folderPath));
+                    writeMetrics(properties);
+                    return;
+                }
 
-            // Reads odt files
-            ODTReader reader = new ODTReader();
-            reader.ReadODTFiles(folderPath);
+                long debounceMillis = PropertiesLoader.getLong(properties, "watchDebounceMillis", 1000);
+                if (serve) {
+                    // Runs until stopped, answers scan, query and rewrite requests from memory
+                    ODTService service = new ODTService(reader, folderPath, debounceMillis, options, executor);
+                    service.start(PropertiesLoader.getInt(properties, "servePort", 8765));
+                    service.awaitClosed();
+                    return;
+                }
 
-            // Edits odt file
-            ODTEditor editor = new ODTEditor();
-            editor.modifyOdtImports(odtFile, oldImport, newImport, folderPath);
+                if (watch) {
+                    // Runs until stopped, report is written again after each batch of changes
+                    ODTWatcher watcher = new ODTWatcher(reader, folderPath, debounceMillis,
+                            fileImportsMap -> publishReport(properties, fileImportsMap));
+                    String reportOutput = properties.getProperty("reportOutput", "");
+                    if (!reportOutput.isEmpty()) {
+                        // Report may be written inside the watched folder
+                        watcher.ignore(new File(reportOutput));
+                    }
+                    watcher.run();
+                    return;
+                }
 
-        } catch (PropertiesLoadException | InvalidFolderPathException | InvalidODTFileNameException e) {
+                // Edits odt files, mapping file replaces oldImport and newImport with many renames at once
+                String mappingFile = properties.getProperty("mappingFile", "");
+                ImportMatcher matcher = mappingFile.isEmpty()
+                        ? ImportMatcher.of(oldImport, newImport)
+                        : new ImportMatcher(ImportMatcher.loadMappings(new File(mappingFile)));
+                // Bulk edit rewrites each file while it is scanned instead of opening it again afterwards
+                boolean fusedEdit = bulkEdit && Boolean.parseBoolean(properties.getProperty("fusedEdit", "false"));
+                // Journal lets a restarted run skip files finished before it was interrupted
+                RewriteJournal journal = null;
+                if (bulkEdit && Boolean.parseBoolean(properties.getProperty("journal", "false")) && !options.dryRun()) {
+                    String journalFile = properties.getProperty("journalFile", "");
+                    journal = RewriteJournal.open(journalFile.isEmpty()
+                                    ? new File(folderPath, RewriteJournal.DEFAULT_FILE_NAME) : new File(journalFile),
+                            matcher.describe() + "\n" + selector.describe());
+                }
+                if (fusedEdit) {
+                    reader.setFusedEdit(matcher, options, journal);
+                }
+
+                // Writes report while scanning, reverse index is built from the same pass when needed
+                String queryImport = properties.getProperty("queryImport", "");
+                ReverseImportIndex reverseIndex = queryImport.isEmpty() ? null : new ReverseImportIndex();
+                try (ReportWriter report = ReportWriter.create(properties.getProperty("reportFormat", "json"),
+                        properties.getProperty("reportOutput", ""),
+                        Boolean.parseBoolean(properties.getProperty("reportGzip", "false")))) {
+                    reader.scanODTFiles(folderPath, (file, imports) -> {
+                        report.fileScanned(file, imports);
+                        if (reverseIndex != null) {
+                            reverseIndex.add(file, imports);
+                        }
+                    });
+                }
+                if (markerFilter != null) {
+                    // Standard output may hold the report
+                    System.err.println(markerFilter.summary());
+                }
+
+                // Lists templates which import given block
+                if (reverseIndex != null) {
+                    printImporters(reverseIndex, queryImport);
+                }
+
+                // Files found by the scan are reused, so the folder is walked only once
+                FileCatalog catalog = reader.getCatalog();
+                if (fusedEdit) {
+                    List<RewriteResult> results = reader.getFusedResults();
+                    ODTEditor.printSummary(results, options.dryRun());
+                    if (journal != null) {
+                        journal.finish(results.stream().allMatch(result -> result.error() == null));
+                    }
+                } else if (bulkEdit) {
+                    ODTEditor.modifyAllOdtImports(catalog, matcher, options, executor, journal);
+                } else {
+                    ODTEditor.modifyOdtImports(odtFile, matcher, options, catalog);
+                }
+
+                writeMetrics(properties);
+            } finally {
+                if (executor != null) {
+                    executor.shutdown();
+                }
+            }
+
+        } catch (PropertiesLoadException | InvalidFolderPathException | InvalidODTFileNameException
+                 | ImportMappingException | ShardMergeException | JobFileException | IOException e) {
             // Catch and log errors
             System.err.println(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
+    /**
+     * Prints end of run summary to standard error and writes metrics file when configured
+     * @param properties loaded properties with metrics settings
+     * @throws IOException when metrics file can not be written
+     */
+    private static void writeMetrics(Properties properties) throws IOException {
+        if (Boolean.parseBoolean(properties.getProperty("metricsSummary", "true"))) {
+            // Standard output may hold the report
+            System.err.println(Metrics.get().summary());
+        }
+
+        // .prom files get Prometheus text format for node exporter textfile collector, others JSON
+        String output = properties.getProperty("metricsOutput", "");
+        if (!output.isEmpty()) {
+            String content = output.endsWith(".prom") ? Metrics.get().toPrometheus() : Metrics.get().toJson().toString(2);
+            Path tempFile = Paths.get(output + ".tmp");
+            Files.writeString(tempFile, content, StandardCharsets.UTF_8);
+            Files.move(tempFile, Paths.get(output), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Writes whole report. Report file is replaced only after it is fully written.
+     * @param properties loaded properties with report settings
+     * @param fileImportsMap odt files with their imports
+     * @throws IOException when report can not be written
+     */
+    private static void publishReport(Properties properties, Map<File, List<String>> fileImportsMap) throws IOException {
+        String output = properties.getProperty("reportOutput", "");
+        File tempFile = output.isEmpty() ? null : new File(output + ".tmp");
+
+        try (ReportWriter report = ReportWriter.create(properties.getProperty("reportFormat", "json"),
+                tempFile == null ? "" : tempFile.getPath(),
+                Boolean.parseBoolean(properties.getProperty("reportGzip", "false")))) {
+            for (Map.Entry<File, List<String>> entry : fileImportsMap.entrySet()) {
+                report.fileScanned(entry.getKey(), entry.getValue());
+            }
+        }
+        if (tempFile != null) {
+            Files.move(tempFile.toPath(), Paths.get(output), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Prints files which import given block directly and all files affected by its change
+     * @param index reverse import index
+     * @param block block name
+     */
+    private static void printImporters(ReverseImportIndex index, String block) {
+        JSONObject result = new JSONObject();
+        result.put("import", block);
+        result.put("direct", new JSONArray(index.directImporters(block).stream().map(File::getPath).toList()));
+        result.put("affected", new JSONArray(index.affectedBy(block).stream().map(File::getPath).toList()));
+        System.out.println(result.toString(2));
+    }
+
 }
\ No newline at end of file
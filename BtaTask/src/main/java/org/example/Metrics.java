@@ -0,0 +1,387 @@
+package org.example;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Counters and timing histograms of scans and rewrites, shared by the whole process.
+ * Can be printed as a summary or exported as Prometheus text or JSON.
+ */
+public class Metrics {
+    public static final String FILES_SCANNED = "odt_files_scanned_total";
+    public static final String DOCUMENT_SECONDS = "odt_document_scan_seconds";
+    public static final String ENTRY_PARSE_SECONDS = "odt_entry_parse_seconds";
+    public static final String BYTES_INFLATED = "odt_bytes_inflated_total";
+    public static final String INFLATE_NANOS = "odt_inflate_nanoseconds_total";
+    public static final String ENTRIES_SKIPPED = "odt_entries_skipped_total";
+    public static final String FILES_REWRITTEN = "odt_files_rewritten_total";
+    public static final String IMPORTS_REPLACED = "odt_imports_replaced_total";
+    public static final String REWRITE_PARSE_SECONDS = "odt_rewrite_parse_seconds";
+    public static final String REWRITE_ZIP_SECONDS = "odt_rewrite_zip_seconds";
+    public static final String BYTE_ENTRIES = "odt_rewrite_byte_entries_total";
+    public static final String FALLBACK_ENTRIES = "odt_rewrite_fallback_entries_total";
+    public static final String ERRORS = "odt_errors_total";
+    public static final String QUEUE_DEPTH = "odt_pipeline_queue_depth";
+
+    private static final Metrics INSTANCE = new Metrics();
+    private static final int SLOWEST_DOCUMENTS = 10;
+    // Histogram bucket upper bounds in seconds
+    private static final double[] BUCKETS = {0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5, 10};
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final Map<String, QueueDepth> queues = new ConcurrentHashMap<>();
+    // Slowest documents, fastest first so it can be trimmed from the head
+    private final PriorityQueue<Document> slowest = new PriorityQueue<>(Comparator.comparingLong(Document::nanos));
+    private volatile long startNanos = System.nanoTime();
+
+    /**
+     * Scan time of a single document
+     */
+    private record Document(File file, long nanos) {
+    }
+
+    /**
+     * Histogram with fixed buckets, counts are not cumulative
+     */
+    private static class Histogram {
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            double seconds = nanos / 1e9;
+            int bucket = 0;
+            while (bucket < BUCKETS.length && seconds > BUCKETS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+            count.increment();
+            sumNanos.add(nanos);
+        }
+    }
+
+    /**
+     * Depth of a pipeline queue, sampled each time an item is added
+     */
+    private static class QueueDepth {
+        private final LongAdder samples = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        private volatile int capacity;
+
+        double average() {
+            long count = samples.sum();
+            return count == 0 ? 0 : (double) total.sum() / count;
+        }
+    }
+
+    /**
+     * @return metrics of this process
+     */
+    public static Metrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Clears all values and starts measuring run time again
+     */
+    public void reset() {
+        counters.clear();
+        histograms.clear();
+        errors.clear();
+        queues.clear();
+        synchronized (slowest) {
+            slowest.clear();
+        }
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * @param name counter name
+     * @param delta value to add
+     */
+    public void increment(String name, long delta) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * @param name counter name
+     * @return counter value
+     */
+    public long count(String name) {
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Records duration into histogram
+     * @param name histogram name
+     * @param nanos duration
+     */
+    public void record(String name, long nanos) {
+        histograms.computeIfAbsent(name, key -> new Histogram()).record(nanos);
+    }
+
+    /**
+     * Records scan time of a document and keeps the slowest ones
+     * @param file odt file
+     * @param nanos time spent reading the file
+     */
+    public void recordDocument(File file, long nanos) {
+        increment(FILES_SCANNED, 1);
+        record(DOCUMENT_SECONDS, nanos);
+        synchronized (slowest) {
+            if (slowest.size() < SLOWEST_DOCUMENTS || slowest.peek().nanos() < nanos) {
+                slowest.add(new Document(file, nanos));
+                if (slowest.size() > SLOWEST_DOCUMENTS) {
+                    slowest.poll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts error by its exception type
+     * @param e error
+     */
+    public void error(Exception e) {
+        errors.computeIfAbsent(e.getClass().getSimpleName(), key -> new LongAdder()).increment();
+    }
+
+    /**
+     * @param type simple name of exception class
+     * @return number of errors of the type
+     */
+    public long errorCount(String type) {
+        LongAdder counter = errors.get(type);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Records depth of a pipeline queue, a queue which stays full points to a slow stage after it
+     * @param stage name of the stage which takes items from the queue
+     * @param depth items in queue
+     * @param capacity maximum items in queue
+     */
+    public void recordQueueDepth(String stage, int depth, int capacity) {
+        QueueDepth queue = queues.computeIfAbsent(stage, key -> new QueueDepth());
+        queue.capacity = capacity;
+        queue.samples.increment();
+        queue.total.add(depth);
+        queue.max.accumulate(depth);
+    }
+
+    /**
+     * @param stage name of the stage which takes items from the queue
+     * @return highest recorded depth of the queue
+     */
+    public long maxQueueDepth(String stage) {
+        QueueDepth queue = queues.get(stage);
+        return queue == null ? 0 : queue.max.get();
+    }
+
+    /**
+     * Wraps stream of an inflated entry, counts bytes read from it and time spent reading
+     * @param in entry stream
+     * @return measured stream
+     */
+    public InputStream measureInflate(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                long start = System.nanoTime();
+                int b = super.read();
+                increment(INFLATE_NANOS, System.nanoTime() - start);
+                if (b >= 0) {
+                    increment(BYTES_INFLATED, 1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                long start = System.nanoTime();
+                int read = super.read(buffer, offset, length);
+                increment(INFLATE_NANOS, System.nanoTime() - start);
+                if (read > 0) {
+                    increment(BYTES_INFLATED, read);
+                }
+                return read;
+            }
+        };
+    }
+
+    /**
+     * @return human readable summary of the run
+     */
+    public String summary() {
+        double elapsed = (System.nanoTime() - startNanos) / 1e9;
+        long files = count(FILES_SCANNED);
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format(Locale.ROOT, "Scanned %d files in %.2f s (%.1f files/s), inflated %d bytes in %.2f s%n",
+                files, elapsed, elapsed > 0 ? files / elapsed : 0, count(BYTES_INFLATED), count(INFLATE_NANOS) / 1e9));
+        appendHistogram(summary, "Entry parse", ENTRY_PARSE_SECONDS);
+        appendHistogram(summary, "Rewrite parse", REWRITE_PARSE_SECONDS);
+        appendHistogram(summary, "Rewrite zip", REWRITE_ZIP_SECONDS);
+        if (count(FILES_REWRITTEN) > 0) {
+            summary.append("Rewrote ").append(count(FILES_REWRITTEN)).append(" files, replaced ")
+                    .append(count(IMPORTS_REPLACED)).append(" imports").append(System.lineSeparator());
+        }
+        if (count(BYTE_ENTRIES) + count(FALLBACK_ENTRIES) > 0) {
+            summary.append("Byte rewrite: ").append(count(BYTE_ENTRIES)).append(" entries, parsed fallback: ")
+                    .append(count(FALLBACK_ENTRIES)).append(" entries").append(System.lineSeparator());
+        }
+        for (Map.Entry<String, QueueDepth> queue : new TreeMap<>(queues).entrySet()) {
+            summary.append(String.format(Locale.ROOT, "Queue before %s stage: %.1f average, %d max of %d%n",
+                    queue.getKey(), queue.getValue().average(), queue.getValue().max.get(), queue.getValue().capacity));
+        }
+        for (Map.Entry<String, LongAdder> error : new TreeMap<>(errors).entrySet()) {
+            summary.append("Errors ").append(error.getKey()).append(": ").append(error.getValue().sum())
+                    .append(System.lineSeparator());
+        }
+        List<Document> documents = slowestDocuments();
+        if (!documents.isEmpty()) {
+            summary.append("Slowest documents:").append(System.lineSeparator());
+            for (Document document : documents) {
+                summary.append(String.format(Locale.ROOT, "  %.1f ms %s%n", document.nanos() / 1e6, document.file().getPath()));
+            }
+        }
+        return summary.toString().stripTrailing();
+    }
+
+    /**
+     * @return metrics in Prometheus text format
+     */
+    public String toPrometheus() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, LongAdder> counter : new TreeMap<>(counters).entrySet()) {
+            text.append("# TYPE ").append(counter.getKey()).append(" counter\n");
+            text.append(counter.getKey()).append(' ').append(counter.getValue().sum()).append('\n');
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            String name = entry.getKey();
+            Histogram histogram = entry.getValue();
+            text.append("# TYPE ").append(name).append(" histogram\n");
+            long cumulative = 0;
+            for (int i = 0; i < histogram.buckets.length; i++) {
+                cumulative += histogram.buckets[i].sum();
+                String bound = i < BUCKETS.length ? String.valueOf(BUCKETS[i]) : "+Inf";
+                text.append(name).append("_bucket{le=\"").append(bound).append("\"} ").append(cumulative).append('\n');
+            }
+            text.append(name).append("_sum ").append(histogram.sumNanos.sum() / 1e9).append('\n');
+            text.append(name).append("_count ").append(histogram.count.sum()).append('\n');
+        }
+        text.append("# TYPE ").append(ERRORS).append(" counter\n");
+        for (Map.Entry<String, LongAdder> error : new TreeMap<>(errors).entrySet()) {
+            text.append(ERRORS).append("{type=\"").append(error.getKey()).append("\"} ").append(error.getValue().sum()).append('\n');
+        }
+        if (!queues.isEmpty()) {
+            Map<String, QueueDepth> sorted = new TreeMap<>(queues);
+            appendQueueGauge(text, QUEUE_DEPTH + "_average", sorted, QueueDepth::average);
+            appendQueueGauge(text, QUEUE_DEPTH + "_max", sorted, queue -> queue.max.get());
+            appendQueueGauge(text, "odt_pipeline_queue_capacity", sorted, queue -> queue.capacity);
+        }
+        text.append("# TYPE odt_slowest_document_seconds gauge\n");
+        for (Document document : slowestDocuments()) {
+            text.append("odt_slowest_document_seconds{file=\"").append(escapeLabel(document.file().getPath())).append("\"} ")
+                    .append(document.nanos() / 1e9).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return metrics as JSON object
+     */
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("elapsedSeconds", (System.nanoTime() - startNanos) / 1e9);
+
+        JSONObject countersJson = new JSONObject();
+        counters.forEach((name, counter) -> countersJson.put(name, counter.sum()));
+        json.put("counters", countersJson);
+
+        JSONObject histogramsJson = new JSONObject();
+        histograms.forEach((name, histogram) -> {
+            JSONObject histogramJson = new JSONObject();
+            histogramJson.put("count", histogram.count.sum());
+            histogramJson.put("sumSeconds", histogram.sumNanos.sum() / 1e9);
+            JSONArray buckets = new JSONArray();
+            for (int i = 0; i < histogram.buckets.length; i++) {
+                buckets.put(new JSONObject().put("le", i < BUCKETS.length ? String.valueOf(BUCKETS[i]) : "+Inf")
+                        .put("count", histogram.buckets[i].sum()));
+            }
+            histogramJson.put("buckets", buckets);
+            histogramsJson.put(name, histogramJson);
+        });
+        json.put("histograms", histogramsJson);
+
+        JSONObject errorsJson = new JSONObject();
+        errors.forEach((type, counter) -> errorsJson.put(type, counter.sum()));
+        json.put("errors", errorsJson);
+
+        JSONObject queuesJson = new JSONObject();
+        queues.forEach((stage, queue) -> queuesJson.put(stage, new JSONObject().put("average", queue.average())
+                .put("max", queue.max.get()).put("capacity", queue.capacity)));
+        json.put("queues", queuesJson);
+
+        JSONArray slowestJson = new JSONArray();
+        for (Document document : slowestDocuments()) {
+            slowestJson.put(new JSONObject().put("file", document.file().getPath()).put("seconds", document.nanos() / 1e9));
+        }
+        json.put("slowestDocuments", slowestJson);
+        return json;
+    }
+
+    /**
+     * @return slowest documents, slowest first
+     */
+    private List<Document> slowestDocuments() {
+        List<Document> documents;
+        synchronized (slowest) {
+            documents = new ArrayList<>(slowest);
+        }
+        documents.sort(Comparator.comparingLong(Document::nanos).reversed());
+        return documents;
+    }
+
+    private void appendHistogram(StringBuilder summary, String label, String name) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null || histogram.count.sum() == 0) {
+            return;
+        }
+        long count = histogram.count.sum();
+        summary.append(String.format(Locale.ROOT, "%s: %d times, %.2f s total, %.2f ms average%n",
+                label, count, histogram.sumNanos.sum() / 1e9, histogram.sumNanos.sum() / 1e6 / count));
+    }
+
+    private static void appendQueueGauge(StringBuilder text, String name, Map<String, QueueDepth> queues,
+                                         ToDoubleFunction<QueueDepth> value) {
+        text.append("# TYPE ").append(name).append(" gauge\n");
+        for (Map.Entry<String, QueueDepth> queue : queues.entrySet()) {
+            text.append(name).append("{stage=\"").append(escapeLabel(queue.getKey())).append("\"} ")
+                    .append(value.applyAsDouble(queue.getValue())).append('\n');
+        }
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,35 @@
+package org.example;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes one JSON record per line as soon as a file is scanned
+ */
+public class NdjsonReportWriter implements ReportWriter {
+    private final Writer writer;
+
+    public NdjsonReportWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void fileScanned(File file, List<String> imports) throws IOException {
+        JSONObject fileData = new JSONObject();
+        fileData.put("file", file.getName());
+        fileData.put("imports", new JSONArray(imports));
+        fileData.write(writer);
+        writer.write('\n');
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
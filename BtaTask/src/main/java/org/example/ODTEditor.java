@@ -1,23 +1,30 @@
 package org.example;
 
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.*;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
-import java.util.Enumeration;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 
 public class ODTEditor {
+    private static final String MIMETYPE = "mimetype";
+
     /**
      * Method to manage editing
      * @param odtFile odt file which will be modified
@@ -26,209 +33,553 @@ public class ODTEditor {
      * @param fileDir path to odt file
      */
     public static void modifyOdtImports(File odtFile, String oldImport, String newImport, String fileDir) {
-        try {
-            // Creates temporary directory to save copied files xml files from odt file
-            File tempDir = new File(fileDir + File.separator + "temp_odt");
-            if (!tempDir.exists()) {
-                tempDir.mkdir();
-            }
-
-            File file = findODTFile( odtFile, fileDir);
+        modifyOdtImports(odtFile, ImportMatcher.of(oldImport, newImport), RewriteOptions.DEFAULT, fileDir);
+    }
 
-            // Unzips odt file
-            unzip(file, tempDir);
+    /**
+     * Method to manage editing with many replacements at once
+     * @param odtFile odt file which will be modified
+     * @param matcher old imports with their new imports
+     * @param options entry selection, dry run and compression settings
+     * @param fileDir path to odt file
+     */
+    public static void modifyOdtImports(File odtFile, ImportMatcher matcher, RewriteOptions options, String fileDir) {
+        modifyOdtImports(odtFile, matcher, options, FileCatalog.build(options.walker(), Paths.get(fileDir)));
+    }
 
-            // Modify import links in all XML files
-            File[] xmlFiles = tempDir.listFiles((dir, name) -> name.endsWith(".xml"));
-            if (xmlFiles != null) {
-                for (File xmlFile : xmlFiles) {
-                    replaceImportInXML(xmlFile, oldImport, newImport);
+    /**
+     * Method to manage editing of a file found by an earlier scan, the folder is not walked again
+     * @param odtFile odt file which will be modified, only its name is used
+     * @param matcher old imports with their new imports
+     * @param options entry selection, dry run and compression settings
+     * @param catalog files found in the folder
+     */
+    public static void modifyOdtImports(File odtFile, ImportMatcher matcher, RewriteOptions options, FileCatalog catalog) {
+        try {
+            List<File> found = catalog.find(odtFile.getName());
+            if (found.isEmpty()) {
+                System.err.println("ODT file not found: " + odtFile.getName());
+                return;
+            }
+            if (found.size() > 1) {
+                // Editing whichever comes first could change the wrong template
+                System.err.println("Several ODT files are named " + odtFile.getName() + ", none was modified:");
+                for (File duplicate : found) {
+                    System.err.println("  " + duplicate.getAbsolutePath());
                 }
+                return;
             }
+            File file = found.get(0);
 
-            // Repackage the ODT File and overwrite the original
-            File modifiedOdt = new File(fileDir + File.separator + odtFile.getName());
-            zipFolder(tempDir, modifiedOdt);
-
-            // Clean up temp directory after use
-            deleteDirectory(tempDir);
+            // Rewrites changed XML files straight from the original archive and overwrites the original
+            int replaced = rewriteOdt(file, matcher, options);
+            if (replaced == 0) {
+                System.out.println("No imports to replace in: " + file.getAbsolutePath());
+                return;
+            }
+            if (options.dryRun()) {
+                System.out.println("Dry run, " + replaced + " imports would be replaced in: " + file.getAbsolutePath());
+                return;
+            }
 
-            System.out.println("ODT file modified successfully: " + modifiedOdt.getAbsolutePath());
+            System.out.println("ODT file modified successfully: " + file.getAbsolutePath());
         } catch (Exception e) {
+            Metrics.get().error(e);
             System.err.println(e.getMessage());
         }
     }
 
-    private static File findODTFile(File odtFile, String directoryPath) {
-        File folder = new File(directoryPath);
+    /**
+     * Rewrites all odt files in folder which contain the old import
+     * @param folderPath folder which contains odt files
+     * @param oldImport import to change
+     * @param newImport new import
+     * @param executor executor used to rewrite files in parallel, null to rewrite on calling thread
+     * @return results for all scanned files, sorted by path
+     */
+    public static List<RewriteResult> modifyAllOdtImports(String folderPath, String oldImport, String newImport,
+                                                          ExecutorService executor) {
+        return modifyAllOdtImports(folderPath, ImportMatcher.of(oldImport, newImport), RewriteOptions.DEFAULT, executor);
+    }
+
+    /**
+     * Rewrites all odt files in folder which contain any of the old imports
+     * @param folderPath folder which contains odt files
+     * @param matcher old imports with their new imports
+     * @param options entry selection, dry run and compression settings
+     * @param executor executor used to rewrite files in parallel, null to rewrite on calling thread
+     * @return results for all scanned files, sorted by path
+     */
+    public static List<RewriteResult> modifyAllOdtImports(String folderPath, ImportMatcher matcher,
+                                                          RewriteOptions options, ExecutorService executor) {
+        return modifyAllOdtImports(FileCatalog.build(options.walker(), Paths.get(folderPath)), matcher, options, executor);
+    }
 
-        if (!folder.exists() || !folder.isDirectory()) {
-            return null;
-        }
+    /**
+     * Rewrites all files found by an earlier scan which contain any of the old imports
+     * @param catalog files found in the folder
+     * @param matcher old imports with their new imports
+     * @param options entry selection, dry run and compression settings
+     * @param executor executor used to rewrite files in parallel, null to rewrite on calling thread
+     * @return results for all cataloged files, sorted by path
+     */
+    public static List<RewriteResult> modifyAllOdtImports(FileCatalog catalog, ImportMatcher matcher,
+                                                          RewriteOptions options, ExecutorService executor) {
+        return modifyAllOdtImports(catalog, matcher, options, executor, null);
+    }
 
-        File[] files = folder.listFiles();
-        if (files == null) {
-            return null;
+    /**
+     * Rewrites all files found by an earlier scan, files finished by an interrupted run of the same job are skipped.
+     * Each finished file is recorded in the journal, which is deleted once every file succeeded.
+     * @param catalog files found in the folder
+     * @param matcher old imports with their new imports
+     * @param options entry selection, dry run and compression settings
+     * @param executor executor used to rewrite files in parallel, null to rewrite on calling thread
+     * @param journal journal of finished files, null to rewrite all files
+     * @return results for all cataloged files which were not finished before, sorted by path
+     */
+    public static List<RewriteResult> modifyAllOdtImports(FileCatalog catalog, ImportMatcher matcher,
+                                                          RewriteOptions options, ExecutorService executor,
+                                                          RewriteJournal journal) {
+        List<File> files = new ArrayList<>(catalog.files());
+        if (journal != null) {
+            int before = files.size();
+            files.removeIf(journal::isFinished);
+            if (files.size() < before) {
+                System.out.println("Resuming rewrite, skipping " + (before - files.size()) + " finished files");
+            }
         }
 
-        for (File file : files) {
-            if (file.isDirectory()) {
-                File foundFile = findODTFile(odtFile, file.getAbsolutePath());
-                if (foundFile != null) {
-                    return foundFile; // Return immediately if found
+        List<RewriteResult> results = new ArrayList<>(files.size());
+        boolean interrupted = false;
+        if (executor == null) {
+            for (File file : files) {
+                results.add(rewriteSafely(file, matcher, options, journal));
+            }
+        } else {
+            List<Future<RewriteResult>> futures = new ArrayList<>(files.size());
+            for (File file : files) {
+                futures.add(executor.submit(() -> rewriteSafely(file, matcher, options, journal)));
+            }
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(new RewriteResult(files.get(i), 0, e.getCause().getMessage()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    futures.forEach(future -> future.cancel(true));
+                    interrupted = true;
+                    break;
                 }
-            } else if (file.getName().equalsIgnoreCase(odtFile.getName())) {
-                return file; // Return the matching ODT file
             }
         }
-        return null; // Return null if the file is not found
+
+        printSummary(results, options.dryRun());
+        if (journal != null) {
+            journal.finish(!interrupted && results.stream().allMatch(result -> result.error() == null));
+        }
+        return results;
     }
 
     /**
-     * Replaces given import to another import in XML file
-     * @param xmlFile XML file which should be modified
-     * @param oldImport import to change
-     * @param newImport new import
-     * @throws Exception
+     * Rewrites single file, errors are returned in result instead of thrown
+     * @param journal receives the file once it is finished, null when not used
      */
-    public static void replaceImportInXML(File xmlFile, String oldImport, String newImport) throws Exception {
-        if (xmlFile.length() == 0) {
-            System.out.println("Skipping empty XML file: " + xmlFile.getName());
-            return;
+    private static RewriteResult rewriteSafely(File file, ImportMatcher matcher, RewriteOptions options,
+                                               RewriteJournal journal) {
+        try {
+            if (journal != null) {
+                journal.started(file);
+            }
+            int replaced = rewriteOdt(file, matcher, options, null, journal);
+            if (journal != null) {
+                journal.finished(file, replaced);
+            }
+            return new RewriteResult(file, replaced, null);
+        } catch (Exception e) {
+            Metrics.get().error(e);
+            return new RewriteResult(file, 0, "Error rewriting " + file.getName() + ": " + e.getMessage());
         }
+    }
 
-        // Parse the XML file
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        Document doc = builder.parse(xmlFile);
-        doc.getDocumentElement().normalize();
-
-        // Find and modify text nodes containing import references
-        NodeList textNodes = doc.getElementsByTagName("text:text-input");
-        for (int i = 0; i < textNodes.getLength(); i++) {
-            Node node = textNodes.item(i);
-            if (node.getTextContent().contains(oldImport)) {
-                System.out.println("Replacing import in " + xmlFile.getName());
-                node.setTextContent(node.getTextContent().replace(oldImport, newImport));
+    /**
+     * Prints files which were modified or failed
+     * @param results rewrite results
+     * @param dryRun files were only checked, not written
+     */
+    static void printSummary(List<RewriteResult> results, boolean dryRun) {
+        int modified = 0;
+        int failed = 0;
+        int replaced = 0;
+
+        for (RewriteResult result : results) {
+            if (result.error() != null) {
+                failed++;
+                System.err.println(result.error());
+            } else if (result.replacements() > 0) {
+                modified++;
+                replaced += result.replacements();
+                System.out.println((dryRun ? "Would modify " : "Modified ") + result.file().getAbsolutePath()
+                        + " (" + result.replacements() + " imports)");
             }
         }
+        if (dryRun) {
+            System.out.println("Dry run, scanned " + results.size() + " files, would modify " + modified
+                    + ", failed " + failed + ", would replace " + replaced + " imports");
+            return;
+        }
+        System.out.println("Scanned " + results.size() + " files, modified " + modified + ", failed " + failed
+                + ", replaced " + replaced + " imports");
+    }
 
-        // Save the modified XML file
-        TransformerFactory transformerFactory = TransformerFactory.newInstance();
-        Transformer transformer = transformerFactory.newTransformer();
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.transform(new DOMSource(doc), new StreamResult(xmlFile));
+    /**
+     * Rewrites odt file without extracting it to disk.
+     * XML entries are parsed first, and when none of them contains the import the file is left untouched.
+     * Otherwise changed XML entries are serialized and compressed in parallel, then entries are written
+     * in their original order into a new archive next to it, all other entries are copied
+     * as raw compressed bytes. New archive then replaces the original.
+     * @param odtFile odt file which will be modified
+     * @param oldImport import to change
+     * @param newImport new import
+     * @return number of replaced imports
+     * @throws Exception throws exception on error
+     */
+    static int rewriteOdt(File odtFile, String oldImport, String newImport) throws Exception {
+        return rewriteOdt(odtFile, ImportMatcher.of(oldImport, newImport), RewriteOptions.DEFAULT);
     }
 
     /**
-     * Unzips odt file
-     * @param zipFile odt file
-     * @param targetDir temporary created directory
-     * @throws IOException throws exception on error
+     * Rewrites odt file applying all replacements of the matcher, each selected XML entry is parsed once
+     * @param odtFile odt file which will be modified
+     * @param matcher old imports with their new imports
+     * @param options entry selection, dry run and compression settings
+     * @return number of replaced imports, or imports which would be replaced in dry run
+     * @throws Exception throws exception on error
      */
-    private static void unzip(File zipFile, File targetDir) throws IOException {
-        try (ZipFile zip = new ZipFile(zipFile)) {
-            targetDir.mkdirs();
-            Enumeration<? extends ZipEntry> entries = zip.entries();
-
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
-                File entryFile = new File(targetDir, entry.getName());
-
-                if (entry.isDirectory()) {
-                    entryFile.mkdirs();
-                } else {
-                    // Skip empty XML files
-                    if (entry.getSize() == 0 && entry.getName().endsWith(".xml")) {
-                        System.out.println("Skipping empty XML file: " + entry.getName());
-                        continue;
+    static int rewriteOdt(File odtFile, ImportMatcher matcher, RewriteOptions options) throws Exception {
+        return rewriteOdt(odtFile, matcher, options, null, null);
+    }
+
+    /**
+     * Imports of a document and replacements made in it by a single pass
+     * @param imports imports found before rewriting, as reported by ODTReader
+     * @param replacements number of replaced imports, or imports which would be replaced in dry run
+     */
+    record ReadResult(List<String> imports, int replacements) {
+    }
+
+    /**
+     * Reads imports for the report and rewrites the file in the same pass, each selected entry is opened and parsed once
+     * @param odtFile odt file which will be modified
+     * @param matcher old imports with their new imports
+     * @param options entry selection, dry run and compression settings
+     * @return imports found before rewriting and number of replaced imports
+     * @throws Exception throws exception on error
+     */
+    static ReadResult readAndRewrite(File odtFile, ImportMatcher matcher, RewriteOptions options) throws Exception {
+        return readAndRewrite(odtFile, matcher, options, null);
+    }
+
+    /**
+     * Reads imports and rewrites the file in the same pass, the file is recorded in the journal once it is finished
+     * @param journal receives the file once it is finished, null when not used
+     */
+    static ReadResult readAndRewrite(File odtFile, ImportMatcher matcher, RewriteOptions options,
+                                     RewriteJournal journal) throws Exception {
+        if (journal != null) {
+            journal.started(odtFile);
+        }
+        List<String> imports = new ArrayList<>();
+        int replaced = rewriteOdt(odtFile, matcher, options, imports, journal);
+        if (journal != null) {
+            journal.finished(odtFile, replaced);
+        }
+        return new ReadResult(imports, replaced);
+    }
+
+    /**
+     * @param imports receives imports of parsed entries before they are changed, null when not needed
+     * @param journal records the staged file before it replaces the original, null when not used
+     */
+    private static int rewriteOdt(File odtFile, ImportMatcher matcher, RewriteOptions options, List<String> imports,
+                                  RewriteJournal journal) throws Exception {
+        if (ODTReader.isFlatODT(odtFile)) {
+            return rewriteFlatOdt(odtFile, matcher, options, imports, journal);
+        }
+        try (ZipFile source = new ZipFile(odtFile)) {
+            // "mimetype" has to stay the first entry of the package
+            List<ZipArchiveEntry> entries = new ArrayList<>(Collections.list(source.getEntriesInPhysicalOrder()));
+            entries.sort((a, b) -> Boolean.compare(!a.getName().equals(MIMETYPE), !b.getName().equals(MIMETYPE)));
+
+            List<String> entryNames = new ArrayList<>();
+            for (ZipArchiveEntry entry : entries) {
+                if (!entry.isDirectory()) {
+                    entryNames.add(entry.getName());
+                }
+            }
+            ZipArchiveEntry manifest = source.getEntry(EntrySelector.MANIFEST);
+            Set<String> selected = options.selector().select(entryNames, manifest == null ? null : () -> source.getInputStream(manifest));
+
+            // Modified entries by entry name
+            Map<String, EntryRewriter.Rewrite> changed = new HashMap<>();
+            int replaced = 0;
+            long parseStart = System.nanoTime();
+            for (ZipArchiveEntry entry : entries) {
+                if (selected.contains(entry.getName()) && entry.getSize() != 0) {
+                    EntryRewriter.Rewrite rewrite = options.rewriter().prepare(entry.getName(),
+                            entry.getName() + " of " + odtFile.getAbsolutePath(),
+                            () -> Metrics.get().measureInflate(source.getInputStream(entry)), matcher, options.dryRun(), imports);
+                    if (rewrite.replacements() > 0) {
+                        changed.put(entry.getName(), rewrite);
+                        replaced += rewrite.replacements();
                     }
+                }
+            }
+
+            Metrics.get().record(Metrics.REWRITE_PARSE_SECONDS, System.nanoTime() - parseStart);
+
+            if (changed.isEmpty() || options.dryRun()) {
+                return replaced;
+            }
 
-                    entryFile.getParentFile().mkdirs(); // Ensure parent directories exist
-                    try (InputStream in = zip.getInputStream(entry);
-                         OutputStream out = new FileOutputStream(entryFile)) {
-                        byte[] buffer = new byte[1024];
-                        int len;
-                        while ((len = in.read(buffer)) > 0) {
-                            out.write(buffer, 0, len);
+            long zipStart = System.nanoTime();
+
+            // Changed entries are compressed in parallel, archive is then written in order.
+            // Streaming entries are too large to buffer and are compressed while the archive is written.
+            Map<String, Future<CompressedEntry>> compressed = new HashMap<>();
+            for (ZipArchiveEntry entry : entries) {
+                EntryRewriter.Rewrite rewrite = changed.get(entry.getName());
+                if (rewrite != null && !rewrite.streaming()) {
+                    int level = options.compressionLevels().levelFor(entry.getName());
+                    compressed.put(entry.getName(), ForkJoinPool.commonPool().submit(() -> compress(entry, rewrite, level)));
+                }
+            }
+
+            File tempFile = stagingFile(odtFile);
+            try {
+                try (ZipArchiveOutputStream target = new ZipArchiveOutputStream(tempFile)) {
+                    for (ZipArchiveEntry entry : entries) {
+                        EntryRewriter.Rewrite rewrite = changed.get(entry.getName());
+                        if (rewrite != null && rewrite.streaming()) {
+                            writeStreaming(entry, rewrite, options.compressionLevels().levelFor(entry.getName()), target);
+                            continue;
                         }
+                        Future<CompressedEntry> future = compressed.get(entry.getName());
+                        copyEntry(source, entry, future == null ? null : awaitCompressed(future), target);
                     }
                 }
+                commitStaged(tempFile, odtFile, journal);
+            } finally {
+                compressed.values().forEach(future -> future.cancel(true));
+                Files.deleteIfExists(tempFile.toPath());
             }
+            Metrics.get().record(Metrics.REWRITE_ZIP_SECONDS, System.nanoTime() - zipStart);
+            Metrics.get().increment(Metrics.FILES_REWRITTEN, 1);
+            Metrics.get().increment(Metrics.IMPORTS_REPLACED, replaced);
+            return replaced;
         }
     }
 
     /**
-     * Zips modified xml files in folder to odt file
-     * @param folder temporary created folder
-     * @param zipFile modified odt file
-     * @throws IOException throws exception on error
+     * Rewrites flat odt file, which is a single XML document. Written to a temporary file first.
+     * @param odtFile .fodt file which will be modified
+     * @param matcher old imports with their new imports
+     * @param options dry run setting, entry selection and compression are not used
+     * @param imports receives imports of the document before it is changed, null when not needed
+     * @param journal records the staged file before it replaces the original, null when not used
+     * @return number of replaced imports, or imports which would be replaced in dry run
+     * @throws Exception throws exception on error
      */
-    private static void zipFolder(File folder, File zipFile) throws IOException {
-        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zipFile))) {
-            File mimetypeFile = new File(folder, "mimetype");
-            if (mimetypeFile.exists()) {
-                // Ensure "mimetype" is stored uncompressed as required by ODT format
-                ZipEntry mimetypeEntry = new ZipEntry("mimetype");
-                zos.putNextEntry(mimetypeEntry);
-                Files.copy(mimetypeFile.toPath(), zos);
-                zos.closeEntry();
-            }
+    private static int rewriteFlatOdt(File odtFile, ImportMatcher matcher, RewriteOptions options, List<String> imports,
+                                      RewriteJournal journal) throws Exception {
+        long parseStart = System.nanoTime();
+        EntryRewriter.Rewrite rewrite = options.rewriter().prepare(odtFile.getName(), odtFile.getAbsolutePath(),
+                () -> new BufferedInputStream(new FileInputStream(odtFile)), matcher, options.dryRun(), imports);
+        int replaced = rewrite.replacements();
+        Metrics.get().record(Metrics.REWRITE_PARSE_SECONDS, System.nanoTime() - parseStart);
+        if (replaced == 0 || options.dryRun()) {
+            return replaced;
+        }
 
-            // Add all other files
-            zipDirectory(folder, folder, zos);
+        File tempFile = stagingFile(odtFile);
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+                rewrite.writeTo(out);
+            }
+            commitStaged(tempFile, odtFile, journal);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
         }
+        Metrics.get().increment(Metrics.FILES_REWRITTEN, 1);
+        Metrics.get().increment(Metrics.IMPORTS_REPLACED, replaced);
+        return replaced;
+    }
+
+    /**
+     * Staging file of a rewrite, next to the original so it can be moved in place.
+     * Name is fixed, so a staging file left by a crashed run is overwritten by the next rewrite of the same file.
+     * @param odtFile file which is rewritten
+     * @return staging file
+     */
+    static File stagingFile(File odtFile) {
+        return new File(odtFile.getAbsoluteFile().getParentFile(), "." + odtFile.getName() + ".staging");
     }
 
     /**
-     * Adds all files to directory and zips
-     * @param folder
-     * @param baseDir temporary created directory
-     * @param zos Output stream
+     * Moves fully written staging file over the original. Content is flushed to disk first,
+     * so after a crash the original is either unchanged or completely replaced.
+     * @param stagingFile written staging file
+     * @param odtFile original file
+     * @param journal records the staged file before the move, null when not used
      * @throws IOException throws exception on error
      */
-    private static void zipDirectory(File folder, File baseDir, ZipOutputStream zos) throws IOException {
-        for (File file : folder.listFiles()) {
-            if (file.getName().equals("mimetype")) continue; // Skip, as it's already added
-
-            if (file.isDirectory()) {
-                zipDirectory(file, baseDir, zos);
-            } else {
-                try (FileInputStream fis = new FileInputStream(file)) {
-                    String entryName = file.getAbsolutePath().substring(baseDir.getAbsolutePath().length() + 1)
-                            .replace("\\", "/"); // Ensure correct path format
-                    ZipEntry entry = new ZipEntry(entryName);
-                    zos.putNextEntry(entry);
-
-                    byte[] buffer = new byte[1024];
-                    int length;
-                    while ((length = fis.read(buffer)) > 0) {
-                        zos.write(buffer, 0, length);
-                    }
-                    zos.closeEntry();
-                }
-            }
+    private static void commitStaged(File stagingFile, File odtFile, RewriteJournal journal) throws IOException {
+        try (FileChannel channel = FileChannel.open(stagingFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        if (journal != null) {
+            // Move keeps size and modification time, so a restarted run can tell whether it happened
+            journal.staged(odtFile, stagingFile);
+        }
+        try {
+            Files.move(stagingFile.toPath(), odtFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(stagingFile.toPath(), odtFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
     /**
-     * deletes temporary created directory
-     * @param dir directory
-     * @throws IOException
+     * Serialized and compressed entry, ready to be added to archive as raw bytes
      */
-    private static void deleteDirectory(File dir) throws IOException {
-        for (File file : dir.listFiles()) {
-            if (file.isDirectory()) {
-                deleteDirectory(file);
-            } else {
-                file.delete();
+    private record CompressedEntry(ZipArchiveEntry entry, byte[] data) {
+    }
+
+    /**
+     * Serializes modified entry and compresses it with given level
+     * @param original entry which is replaced
+     * @param rewrite new content of the entry
+     * @param level deflate level, 0 stores entry
+     * @return entry with its compressed content
+     */
+    private static CompressedEntry compress(ZipArchiveEntry original, EntryRewriter.Rewrite rewrite, int level) throws Exception {
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        rewrite.writeTo(xml);
+        return compress(original, xml.toByteArray(), level);
+    }
+
+    /**
+     * Writes modified entry straight into the archive, compressed while it is written
+     * @param original entry which is replaced
+     * @param rewrite new content of the entry
+     * @param level deflate level, 0 stores entry
+     * @param target new archive
+     */
+    private static void writeStreaming(ZipArchiveEntry original, EntryRewriter.Rewrite rewrite, int level,
+                                       ZipArchiveOutputStream target) throws Exception {
+        ZipArchiveEntry entry = new ZipArchiveEntry(original.getName());
+        entry.setTime(original.getTime());
+        entry.setMethod(level == 0 ? ZipArchiveEntry.STORED : ZipArchiveEntry.DEFLATED);
+        if (level != 0) {
+            target.setLevel(level);
+        }
+        target.putArchiveEntry(entry);
+        rewrite.writeTo(target);
+        target.closeArchiveEntry();
+    }
+
+    private static CompressedEntry compress(ZipArchiveEntry original, byte[] content, int level) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+
+        ZipArchiveEntry entry = new ZipArchiveEntry(original.getName());
+        entry.setTime(original.getTime());
+        entry.setSize(content.length);
+        entry.setCrc(crc.getValue());
+
+        if (level == 0) {
+            entry.setMethod(ZipArchiveEntry.STORED);
+            entry.setCompressedSize(content.length);
+            return new CompressedEntry(entry, content);
+        }
+
+        // Raw deflate without zlib header, as stored in zip files
+        Deflater deflater = new Deflater(level, true);
+        ByteArrayOutputStream data = new ByteArrayOutputStream(content.length / 4 + 64);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(data, deflater)) {
+            out.write(content);
+        } finally {
+            deflater.end();
+        }
+        entry.setMethod(ZipArchiveEntry.DEFLATED);
+        entry.setCompressedSize(data.size());
+        return new CompressedEntry(entry, data.toByteArray());
+    }
+
+    private static CompressedEntry awaitCompressed(Future<CompressedEntry> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    /**
+     * Copies single entry to new archive
+     * @param compressed compressed content of modified entry, null when entry is unchanged
+     */
+    private static void copyEntry(ZipFile source, ZipArchiveEntry entry, CompressedEntry compressed,
+                                  ZipArchiveOutputStream target) throws Exception {
+        if (compressed != null) {
+            target.addRawArchiveEntry(compressed.entry(), new ByteArrayInputStream(compressed.data()));
+            return;
+        }
+
+        // ODF requires mimetype to be stored without compression
+        if (entry.getName().equals(MIMETYPE) && entry.getMethod() != ZipArchiveEntry.STORED) {
+            try (InputStream in = source.getInputStream(entry)) {
+                CompressedEntry stored = compress(entry, in.readAllBytes(), 0);
+                target.addRawArchiveEntry(stored.entry(), new ByteArrayInputStream(stored.data()));
             }
+            return;
+        }
+
+        // Unchanged entry, copied without inflating
+        try (InputStream raw = source.getRawInputStream(entry)) {
+            target.addRawArchiveEntry(entry, raw);
         }
-        dir.delete();
     }
 
-}
+    /**
+     * Replaces given import to another import in XML file
+     * @param xmlFile XML file which should be modified
+     * @param oldImport import to change
+     * @param newImport new import
+     * @throws Exception
+     */
+    public static void replaceImportInXML(File xmlFile, String oldImport, String newImport) throws Exception {
+        if (xmlFile.length() == 0) {
+            System.out.println("Skipping empty XML file: " + xmlFile.getName());
+            return;
+        }
 
+        // Parse the XML file
+        Document doc;
+        try (InputStream in = new FileInputStream(xmlFile)) {
+            doc = DomEntryRewriter.parseXML(in);
+        }
+
+        // Find and modify text nodes containing import references
+        DomEntryRewriter.replaceImports(doc, ImportMatcher.of(oldImport, newImport), xmlFile.getName());
+
+        // Save the modified XML file
+        try (OutputStream out = new FileOutputStream(xmlFile)) {
+            DomEntryRewriter.writeXML(doc, out);
+        }
+    }
+
+}
 
 
 
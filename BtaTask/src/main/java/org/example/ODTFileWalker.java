@@ -0,0 +1,313 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Finds odt files in a folder tree and passes them on one by one while the tree is still being walked.
+ * Files come in the same order as a full list sorted by path, because each folder is sorted before it is visited.
+ * Globs are matched against paths relative to the root with / separators, * stays in one folder, ** crosses folders.
+ * Symbolic links to folders are followed only when enabled, and a link back to a parent folder is skipped.
+ * A sharded walker accepts only files whose relative path hashes to its shard, so several processes can split a folder.
+ */
+public class ODTFileWalker {
+    /**
+     * All .odt files at any depth, links followed
+     */
+    public static final ODTFileWalker DEFAULT = new ODTFileWalker(List.of(), List.of(), Integer.MAX_VALUE, true, Set.of("odt"));
+
+    private final List<Pattern> include;
+    private final List<Pattern> exclude;
+    private final int maxDepth;
+    private final boolean followLinks;
+    private final Set<String> extensions;
+    private final int shardIndex;
+    private final int shardCount;
+
+    /**
+     * Receives found files
+     */
+    @FunctionalInterface
+    public interface FileConsumer {
+        void accept(File file) throws IOException;
+    }
+
+    /**
+     * Cached attributes of a folder entry, read once and used for sorting and visiting
+     */
+    private record Child(Path path, String sortKey, BasicFileAttributes attributes) {
+    }
+
+    /**
+     * @param include globs of files to scan, empty scans all files with accepted extension
+     * @param exclude globs of files and folders to skip, excluded folder is not walked at all
+     * @param maxDepth deepest level to walk, files directly in root are on level 1
+     * @param followLinks walk into folders behind symbolic links
+     * @param extensions accepted file extensions without dot, compared ignoring case
+     */
+    public ODTFileWalker(List<String> include, List<String> exclude, int maxDepth, boolean followLinks,
+                         Set<String> extensions) {
+        this.include = include.stream().map(EntrySelector::globToPattern).toList();
+        this.exclude = exclude.stream().map(EntrySelector::globToPattern).toList();
+        this.maxDepth = maxDepth;
+        this.followLinks = followLinks;
+        Set<String> lowerCase = new HashSet<>();
+        for (String extension : extensions) {
+            lowerCase.add(extension.toLowerCase(Locale.ROOT));
+        }
+        this.extensions = Set.copyOf(lowerCase);
+        this.shardIndex = 0;
+        this.shardCount = 1;
+    }
+
+    private ODTFileWalker(ODTFileWalker walker, int shardIndex, int shardCount) {
+        this.include = walker.include;
+        this.exclude = walker.exclude;
+        this.maxDepth = walker.maxDepth;
+        this.followLinks = walker.followLinks;
+        this.extensions = walker.extensions;
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * Creates walker which accepts only files of one shard, every file belongs to exactly one of the shards
+     * @param index shard of this walker, from 0 to count - 1
+     * @param count number of shards
+     * @return walker with the same settings limited to the shard
+     */
+    public ODTFileWalker withShard(int index, int count) {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Invalid shard " + index + " of " + count);
+        }
+        return new ODTFileWalker(this, index, count);
+    }
+
+    /**
+     * @param relativePath path relative to the walked folder with / separators
+     * @param count number of shards
+     * @return shard of the path, the same on every machine and JVM
+     */
+    static int shardOf(String relativePath, int count) {
+        // String hash code is fixed by the language specification
+        return Math.floorMod(relativePath.hashCode(), count);
+    }
+
+    /**
+     * Creates walker from comma separated settings
+     * @param include comma separated globs of files to scan, empty scans all
+     * @param exclude comma separated globs of files and folders to skip
+     * @param maxDepth deepest level to walk, 0 or less walks all levels
+     * @param followLinks walk into folders behind symbolic links
+     * @param extensions comma separated extensions, e.g. odt,ott,fodt, empty uses odt
+     * @return walker
+     */
+    public static ODTFileWalker create(String include, String exclude, int maxDepth, boolean followLinks,
+                                       String extensions) {
+        Set<String> extensionSet = new HashSet<>();
+        for (String extension : split(extensions)) {
+            extensionSet.add(extension.startsWith(".") ? extension.substring(1) : extension);
+        }
+        return new ODTFileWalker(split(include), split(exclude), maxDepth <= 0 ? Integer.MAX_VALUE : maxDepth,
+                followLinks, extensionSet.isEmpty() ? Set.of("odt") : extensionSet);
+    }
+
+    /**
+     * Walks folder tree and passes every accepted file to consumer as soon as it is found
+     * @param root folder to walk
+     * @param consumer receives files in path order
+     * @throws IOException when consumer fails, unreadable folders are reported and skipped
+     */
+    public void walk(Path root, FileConsumer consumer) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Set<Object> ancestors = new HashSet<>();
+        ancestors.add(folderKey(root, Files.readAttributes(root, BasicFileAttributes.class)));
+        visitFolder(root, root, 1, ancestors, consumer);
+    }
+
+    /**
+     * Walks one folder inside the tree with the same rules as a walk of the whole tree, used for folders reported by watcher
+     * @param root walked folder, depth and globs are relative to it
+     * @param folder folder inside root
+     * @param consumer receives files in path order
+     * @throws IOException when consumer fails, unreadable folders are reported and skipped
+     */
+    public void walk(Path root, Path folder, FileConsumer consumer) throws IOException {
+        if (!Files.isDirectory(folder) || !descendsInto(root, folder)) {
+            return;
+        }
+        Set<Object> ancestors = new HashSet<>();
+        ancestors.add(folderKey(folder, Files.readAttributes(folder, BasicFileAttributes.class)));
+        Path relative = root.toAbsolutePath().relativize(folder.toAbsolutePath());
+        visitFolder(root.toAbsolutePath(), folder.toAbsolutePath(),
+                relative.toString().isEmpty() ? 1 : relative.getNameCount() + 1, ancestors, consumer);
+    }
+
+    /**
+     * Checks single folder with the same rules as walk
+     * @param root walked folder
+     * @param folder folder inside root
+     * @return true when walk would visit the folder, root itself is always visited
+     */
+    public boolean descendsInto(Path root, Path folder) {
+        Path absoluteRoot = root.toAbsolutePath();
+        Path relative = absoluteRoot.relativize(folder.toAbsolutePath());
+        if (relative.toString().isEmpty()) {
+            return true;
+        }
+        // Folder on level n is walked from its parent on level n - 1, which is visited only below maxDepth
+        if (relative.getNameCount() >= maxDepth) {
+            return false;
+        }
+        for (int i = 1; i <= relative.getNameCount(); i++) {
+            Path part = relative.subpath(0, i);
+            if (matchesAny(exclude, toGlobPath(part))
+                    || (!followLinks && Files.isSymbolicLink(absoluteRoot.resolve(part)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects all accepted files
+     * @param root folder to walk
+     * @return files sorted by path
+     */
+    public List<File> list(Path root) {
+        List<File> files = new ArrayList<>();
+        try {
+            walk(root, files::add);
+        } catch (IOException e) {
+            // Adding to a list does not throw
+            throw new UncheckedIOException(e);
+        }
+        return files;
+    }
+
+    /**
+     * Checks single file with the same rules as walk, used for files reported by watcher
+     * @param root walked folder
+     * @param file file inside root
+     * @return true when walk would pass the file on
+     */
+    public boolean accepts(Path root, Path file) {
+        Path relative = root.toAbsolutePath().relativize(file.toAbsolutePath());
+        if (relative.getNameCount() > maxDepth) {
+            return false;
+        }
+        // Files inside excluded folders are never walked
+        for (int i = 1; i < relative.getNameCount(); i++) {
+            if (matchesAny(exclude, toGlobPath(relative.subpath(0, i)))) {
+                return false;
+            }
+        }
+        return acceptsFile(relative);
+    }
+
+    /**
+     * Visits one folder, depth first
+     */
+    private void visitFolder(Path root, Path folder, int depth, Set<Object> ancestors, FileConsumer consumer)
+            throws IOException {
+        List<Child> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            for (Path path : stream) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = followLinks
+                            ? Files.readAttributes(path, BasicFileAttributes.class)
+                            : Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException e) {
+                    // Broken link or file deleted while walking
+                    continue;
+                }
+                String name = path.getFileName().toString();
+                // Folder contents sort as "name/...", so walk order equals sorting full paths
+                children.add(new Child(path, attributes.isDirectory() ? name + "/" : name, attributes));
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            System.err.println("Could not read folder " + folder + ": " + e.getMessage());
+            return;
+        }
+        children.sort(Comparator.comparing(Child::sortKey));
+
+        for (Child child : children) {
+            Path relative = root.relativize(child.path());
+            if (child.attributes().isDirectory()) {
+                if (depth >= maxDepth || matchesAny(exclude, toGlobPath(relative))) {
+                    continue;
+                }
+                Object key = folderKey(child.path(), child.attributes());
+                if (!ancestors.add(key)) {
+                    System.err.println("Skipping symbolic link loop: " + child.path());
+                    continue;
+                }
+                visitFolder(root, child.path(), depth + 1, ancestors, consumer);
+                ancestors.remove(key);
+            } else if (child.attributes().isRegularFile() && acceptsFile(relative)) {
+                consumer.accept(child.path().toFile());
+            }
+        }
+    }
+
+    private boolean acceptsFile(Path relative) {
+        String name = relative.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot < 0 || !extensions.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT))) {
+            return false;
+        }
+        String path = toGlobPath(relative);
+        return !matchesAny(exclude, path) && (include.isEmpty() || matchesAny(include, path))
+                && (shardCount == 1 || shardOf(path, shardCount) == shardIndex);
+    }
+
+    /**
+     * Identifies folder, so the same folder reached through a link is recognized
+     */
+    private static Object folderKey(Path folder, BasicFileAttributes attributes) throws IOException {
+        Object key = attributes.fileKey();
+        // File systems without file keys, e.g. on Windows, use the resolved path
+        return key != null ? key : folder.toRealPath();
+    }
+
+    private static String toGlobPath(Path relative) {
+        StringBuilder path = new StringBuilder();
+        for (Path name : relative) {
+            if (path.length() > 0) {
+                path.append('/');
+            }
+            path.append(name);
+        }
+        return path.toString();
+    }
+
+    private static boolean matchesAny(List<Pattern> patterns, String path) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(path).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> split(String values) {
+        List<String> result = new ArrayList<>();
+        if (values == null) {
+            return result;
+        }
+        for (String value : values.split(",")) {
+            if (!value.trim().isEmpty()) {
+                result.add(value.trim());
+            }
+        }
+        return result;
+    }
+}
@@ -4,69 +4,383 @@ import org.example.errors.ODTFileReadingException;
 import org.example.errors.XMLFileReadingException;
 import org.json.JSONArray;
 import org.json.JSONObject;
-import org.w3c.dom.Document;
-import org.w3c.dom.NodeList;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathFactory;
-import java.io.File;
+
+import java.io.*;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 public class ODTReader {
+    private static final ImportExtractor DEFAULT_EXTRACTOR = new DomImportExtractor();
+
+    private ExecutorService executor;
+    private ImportExtractor extractor = DEFAULT_EXTRACTOR;
+    private EntrySelector selector = EntrySelector.DEFAULT;
+    private ImportIndex index;
+    private ODTFileWalker walker = ODTFileWalker.DEFAULT;
+    private FileCatalog catalog;
+    private FusedEdit fusedEdit;
+    private ScanPipeline.Settings pipeline;
+
+    /**
+     * Rewrite applied to each file while it is scanned
+     */
+    private record FusedEdit(ImportMatcher matcher, RewriteOptions options, RewriteJournal journal,
+                             List<RewriteResult> results) {
+    }
+
+    public ODTReader() {
+    }
+
+    /**
+     * @param executor executor used to scan files in parallel, null to scan on calling thread
+     */
+    public ODTReader(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param extractor extractor used to find imports in xml files
+     */
+    public void setExtractor(ImportExtractor extractor) {
+        this.extractor = extractor;
+    }
+
+    /**
+     * @param selector decides which xml files of odt file are parsed
+     */
+    public void setEntrySelector(EntrySelector selector) {
+        this.selector = selector;
+    }
+
+    /**
+     * @param walker decides which files in folder are scanned
+     */
+    public void setWalker(ODTFileWalker walker) {
+        this.walker = walker;
+    }
+
+    /**
+     * @param index index of previously scanned files, only new and changed files are parsed when set
+     */
+    public void setIndex(ImportIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * @return index of previously scanned files, null when not used
+     */
+    public ImportIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Scans in stages with own threads and bounded queues instead of the executor, see ScanPipeline.
+     * Not used together with fused editing, which reads and writes each file in one step.
+     * @param readThreads threads reading files, 0 or less uses default
+     * @param parseThreads threads parsing entries, 0 or less uses one per core
+     * @param queueCapacity capacity of each queue between stages, 0 or less uses default
+     */
+    public void setPipeline(int readThreads, int parseThreads, int queueCapacity) {
+        setPipeline(readThreads, parseThreads, queueCapacity, 0);
+    }
+
+    /**
+     * Scans in stages like above, with a limit of inflated entries held in memory
+     * @param readThreads threads reading files, 0 or less uses default
+     * @param parseThreads threads parsing entries, 0 or less uses one per core
+     * @param queueCapacity capacity of each queue between stages, 0 or less uses default
+     * @param memoryMegabytes inflated entries held in memory at once, 0 or less uses default
+     */
+    public void setPipeline(int readThreads, int parseThreads, int queueCapacity, int memoryMegabytes) {
+        this.pipeline = ScanPipeline.Settings.create(readThreads, parseThreads, queueCapacity, memoryMegabytes);
+    }
+
+    /**
+     * Rewrites every scanned file in the same pass which reads its imports, so each file is opened and parsed once.
+     * Imports are found by parsing the selected entries with DOM, the extractor is not used.
+     * @param matcher old imports with their new imports, null turns fused editing off
+     * @param options entry selection, dry run and compression settings
+     */
+    public void setFusedEdit(ImportMatcher matcher, RewriteOptions options) {
+        setFusedEdit(matcher, options, null);
+    }
+
+    /**
+     * Rewrites every scanned file in the same pass which reads its imports, each rewritten file is recorded in the journal.
+     * Files finished by an interrupted run of the same job are only read, they are not rewritten or summarized again.
+     * @param matcher old imports with their new imports, null turns fused editing off
+     * @param options entry selection, dry run and compression settings
+     * @param journal journal of finished files, null to rewrite all files
+     */
+    public void setFusedEdit(ImportMatcher matcher, RewriteOptions options, RewriteJournal journal) {
+        this.fusedEdit = matcher == null ? null
+                : new FusedEdit(matcher, options, journal, Collections.synchronizedList(new ArrayList<>()));
+    }
+
+    /**
+     * @return rewrite results of the last scan sorted by path, empty when fused editing is off
+     */
+    public List<RewriteResult> getFusedResults() {
+        if (fusedEdit == null) {
+            return List.of();
+        }
+        List<RewriteResult> results;
+        synchronized (fusedEdit.results()) {
+            results = new ArrayList<>(fusedEdit.results());
+        }
+        results.sort(Comparator.comparing(RewriteResult::file));
+        return results;
+    }
 
     /**
      * Method to manage reading
      * @param folderPath folder path which contains odt files
+     * @return odt files sorted by path with their imports
      */
-    public void ReadODTFiles(String folderPath){
+    public Map<File, List<String>> ReadODTFiles(String folderPath){
+        Map<File, List<String>> fileImportsMap = scanODTFiles(folderPath);
+
+        // Generates JSON object for output
+        JSONArray jsonOutput = generateJsonOutput(fileImportsMap);
+        System.out.println(jsonOutput.toString(2));
+        return fileImportsMap;
+    }
+
+    /**
+     * Finds all odt files in folder and extracts their imports.
+     * Files which can not be read are reported and left out of the result.
+     * @param folderPath folder path which contains odt files
+     * @return odt files sorted by path with their imports
+     */
+    public Map<File, List<String>> scanODTFiles(String folderPath) {
+        Map<File, List<String>> fileImportsMap = new LinkedHashMap<>();
         try {
-            File folder = new File(folderPath);
-            List<File> files = new ArrayList<>();
-            Map<File, List<String>> fileImportsMap = new HashMap<>();
+            scanODTFiles(folderPath, fileImportsMap::put);
+        } catch (IOException e) {
+            // Collecting into a map does not write anything
+            throw new UncheckedIOException(e);
+        }
+        return fileImportsMap;
+    }
 
-            // Finds all odt files
-            findODTFiles(folder, files);
+    /**
+     * Finds all odt files in folder and passes imports of each file to listener as soon as it is read.
+     * Files are read while the folder is still being walked.
+     * Files which can not be read are reported and left out of the result.
+     * @param folderPath folder path which contains odt files
+     * @param listener receives files sorted by path with their imports
+     * @throws IOException when listener fails to write result
+     */
+    public void scanODTFiles(String folderPath, ScanListener listener) throws IOException {
+        if (index != null) {
+            // Results of other entry selection can not be reused
+            index.useSettings(selector.describe());
+        }
+        if (fusedEdit != null) {
+            fusedEdit.results().clear();
+        }
 
-            // Populate the Map with each file and its imports
-            for (File file : files) {
-                List<String> imports = extractImportsFromAllXML(file);
-                fileImportsMap.put(file, imports);
-            }
+        List<File> files = new ArrayList<>();
+        if (pipeline != null && fusedEdit == null) {
+            scanPipeline(folderPath, files, listener);
+        } else if (executor == null) {
+            walker.walk(Paths.get(folderPath), file -> {
+                files.add(file);
+                scanFile(file, listener);
+            });
+        } else {
+            scanParallel(folderPath, files, listener);
+        }
 
-            // Generates JSON object for output
-            JSONArray jsonOutput = generateJsonOutput(fileImportsMap);
-            System.out.println(jsonOutput.toString(2));
+        catalog = new FileCatalog(files);
 
+        if (index != null) {
+            // Forget deleted files and store new results
+            index.retain(files);
+            saveIndex();
+        }
+    }
+
+    /**
+     * @return files found by the last scan, including files which could not be read, null before first scan
+     */
+    public FileCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Saves index when it is used, errors are reported and ignored
+     */
+    void saveIndex() {
+        if (index == null) {
+            return;
+        }
+        try {
+            index.save();
+        } catch (IOException e) {
+            System.err.println("Could not save import index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Removes file from index, used when file is deleted
+     * @param file deleted odt file
+     */
+    void forget(File file) {
+        if (index != null) {
+            index.remove(file);
+        }
+    }
+
+    /**
+     * Extracts imports of single file, using the index when file did not change
+     * @param file odt file
+     * @return imports mentioned in odt file
+     */
+    List<String> readImports(File file) throws ODTFileReadingException, XMLFileReadingException {
+        long start = System.nanoTime();
+        try {
+            List<String> imports = readImportsCached(file);
+            Metrics.get().recordDocument(file, System.nanoTime() - start);
+            return imports;
+        } catch (ODTFileReadingException | XMLFileReadingException e) {
+            Metrics.get().error(e);
+            throw e;
+        }
+    }
+
+    private List<String> readImportsCached(File file) throws ODTFileReadingException, XMLFileReadingException {
+        if (fusedEdit != null && (fusedEdit.journal() == null || !fusedEdit.journal().isFinished(file))) {
+            return readAndRewrite(file);
+        }
+        if (index == null) {
+            return extractImportsFromAllXML(file, extractor, selector);
+        }
+
+        // Read before parsing, so a file saved during the scan is parsed again next time
+        long size = file.length();
+        long modified = file.lastModified();
+        List<String> imports = index.get(file, size, modified);
+        if (imports == null) {
+            imports = extractImportsFromAllXML(file, extractor, selector);
+            index.put(file, size, modified, imports);
+        }
+        return imports;
+    }
+
+    /**
+     * Reads imports and rewrites file in one pass, the rewrite result is kept for the summary
+     */
+    private List<String> readAndRewrite(File file) throws ODTFileReadingException {
+        long size = file.length();
+        long modified = file.lastModified();
+        ODTEditor.ReadResult result;
+        try {
+            result = ODTEditor.readAndRewrite(file, fusedEdit.matcher(), fusedEdit.options(), fusedEdit.journal());
+        } catch (Exception e) {
+            fusedEdit.results().add(new RewriteResult(file, 0, "Error rewriting " + file.getName() + ": " + e.getMessage()));
+            throw new ODTFileReadingException("Error reading " + file.getName() + ": ", e);
+        }
+        fusedEdit.results().add(new RewriteResult(file, result.replacements(), null));
+
+        if (index != null) {
+            if (result.replacements() > 0 && !fusedEdit.options().dryRun()) {
+                // Rewritten file is parsed again next time
+                index.remove(file);
+            } else {
+                index.put(file, size, modified, result.imports());
+            }
+        }
+        return result.imports();
+    }
+
+    /**
+     * Reads single file on calling thread, errors are reported and file is skipped
+     */
+    private void scanFile(File file, ScanListener listener) throws IOException {
+        List<String> imports;
+        try {
+            imports = readImports(file);
         } catch (ODTFileReadingException | XMLFileReadingException e) {
             System.err.println(e.getMessage());
+            return;
         }
+        listener.fileScanned(file, imports);
     }
 
     /**
-     * Finds all ODT files in specified folder recursively
-     * @param folder
-     * @param odtFiles
+     * Scans with staged pipeline, interruption stops the scan and keeps interrupted status
      */
-    private static void findODTFiles(File folder, List<File> odtFiles) {
-        if (folder == null || !folder.exists()) return;
+    private void scanPipeline(String folderPath, List<File> files, ScanListener listener) throws IOException {
+        try {
+            new ScanPipeline(walker, extractor, selector, index, pipeline).run(Paths.get(folderPath), files, listener);
+        } catch (InterruptedIOException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-        File[] files = folder.listFiles();
-        if (files == null) return;
+    /**
+     * File submitted to executor
+     */
+    private record PendingFile(File file, Future<List<String>> imports) {
+    }
 
-        for (File file : files) {
-            if (file.isDirectory()) {
-                findODTFiles(file, odtFiles);
-            } else if (file.getName().endsWith(".odt")) {
-                odtFiles.add(file);
+    /**
+     * Submits files to executor as they are found and passes results on in walk order,
+     * so output stays deterministic
+     * @param folderPath folder path which contains odt files
+     * @param files receives all found files
+     * @param listener receives files with their imports
+     * @throws IOException when listener fails to write result
+     */
+    private void scanParallel(String folderPath, List<File> files, ScanListener listener) throws IOException {
+        Deque<PendingFile> pending = new ArrayDeque<>();
+        try {
+            walker.walk(Paths.get(folderPath), file -> {
+                files.add(file);
+                pending.add(new PendingFile(file, executor.submit(() -> readImports(file))));
+                // Pass on finished files while walking continues
+                while (!pending.isEmpty() && pending.peek().imports().isDone()) {
+                    passOn(pending.poll(), listener);
+                }
+            });
+            while (!pending.isEmpty()) {
+                passOn(pending.poll(), listener);
+            }
+        } catch (InterruptedIOException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (PendingFile file : pending) {
+                file.imports().cancel(true);
             }
         }
     }
 
+    private void passOn(PendingFile file, ScanListener listener) throws IOException {
+        List<String> imports;
+        try {
+            imports = file.imports().get();
+        } catch (ExecutionException e) {
+            System.err.println(e.getCause().getMessage());
+            return;
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Scan interrupted");
+        }
+        listener.fileScanned(file.file(), imports);
+    }
+
+    /**
+     * @return walker which finds odt files
+     */
+    public ODTFileWalker getWalker() {
+        return walker;
+    }
+
     /**
      * Extracts all imports that are in odt file
      * @param zipFile odt file
@@ -74,33 +388,30 @@ public class ODTReader {
      * @return List of imports mentioned in xml files
      */
     public static List<String> extractImports(ZipFile zipFile, ZipEntry xmlEntry) throws XMLFileReadingException {
-        List<String> imports = new ArrayList<>();
-
-        try {
-            // Skips empty file
-            if (xmlEntry.getSize() == 0) {
-                System.out.println("Skipping empty file: " + xmlEntry.getName());
-                return imports;
-            }
-
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document doc = builder.parse(zipFile.getInputStream(xmlEntry));
-            doc.getDocumentElement().normalize();
+        return extractImports(zipFile, xmlEntry, DEFAULT_EXTRACTOR);
+    }
 
-            // Use XPath to find import-like text anywhere
-            XPathFactory xPathFactory = XPathFactory.newInstance();
-            XPath xpath = xPathFactory.newXPath();
-            String expression = "//*[contains(text(), '[import')]";
-            NodeList importNodes = (NodeList) xpath.evaluate(expression, doc, XPathConstants.NODESET);
+    /**
+     * Extracts all imports that are in odt file with given extractor
+     * @param zipFile odt file
+     * @param xmlEntry xml file
+     * @param extractor extractor which parses xml file
+     * @return List of imports mentioned in xml files
+     */
+    public static List<String> extractImports(ZipFile zipFile, ZipEntry xmlEntry, ImportExtractor extractor) throws XMLFileReadingException {
+        // Skips empty file
+        if (xmlEntry.getSize() == 0) {
+            System.out.println("Skipping empty file: " + xmlEntry.getName());
+            return new ArrayList<>();
+        }
 
-            for (int i = 0; i < importNodes.getLength(); i++) {
-                imports.add(importNodes.item(i).getTextContent().trim() + " (from " + xmlEntry.getName() + ")");
-            }
-        } catch (Exception e) {
-            throw new XMLFileReadingException("Error reading " + xmlEntry.getName() + ": ", e);
+        long start = System.nanoTime();
+        try {
+            return extractor.extractImports(xmlEntry.getName(),
+                    () -> Metrics.get().measureInflate(zipFile.getInputStream(xmlEntry)));
+        } finally {
+            Metrics.get().record(Metrics.ENTRY_PARSE_SECONDS, System.nanoTime() - start);
         }
-        return imports;
     }
 
     /**
@@ -110,29 +421,87 @@ public class ODTReader {
      * @throws ODTFileReadingException when there are errors with reading odt file
      */
     public static List<String> extractImportsFromAllXML(File odtFile) throws ODTFileReadingException, XMLFileReadingException {
+        return extractImportsFromAllXML(odtFile, DEFAULT_EXTRACTOR);
+    }
+
+    /**
+     * Finds xml files one by one and then extracts all mentioned imports with given extractor
+     * @param odtFile odt file
+     * @param extractor extractor which parses xml files
+     * @return imports that are mentioned in odt file
+     * @throws ODTFileReadingException when there are errors with reading odt file
+     */
+    public static List<String> extractImportsFromAllXML(File odtFile, ImportExtractor extractor) throws ODTFileReadingException, XMLFileReadingException {
+        return extractImportsFromAllXML(odtFile, extractor, EntrySelector.DEFAULT);
+    }
+
+    /**
+     * Extracts all mentioned imports from xml files chosen by selector
+     * @param odtFile odt file
+     * @param extractor extractor which parses xml files
+     * @param selector decides which xml files are parsed
+     * @return imports that are mentioned in odt file
+     * @throws ODTFileReadingException when there are errors with reading odt file
+     */
+    public static List<String> extractImportsFromAllXML(File odtFile, ImportExtractor extractor, EntrySelector selector) throws ODTFileReadingException, XMLFileReadingException {
+        if (isFlatODT(odtFile)) {
+            return extractImportsFromFlatXML(odtFile, extractor);
+        }
         List<String> imports = new ArrayList<>();
 
         try (ZipFile zipFile = new ZipFile(odtFile)) {
+            List<String> entryNames = new ArrayList<>();
             Enumeration<? extends ZipEntry> entries = zipFile.entries();
-
             while (entries.hasMoreElements()) {
                 ZipEntry entry = entries.nextElement();
-                if (entry.getName().endsWith(".xml")) { // Only process XML files
-                    imports.addAll(extractImports(zipFile, entry));
+                if (!entry.isDirectory()) {
+                    entryNames.add(entry.getName());
                 }
             }
+
+            ZipEntry manifest = zipFile.getEntry(EntrySelector.MANIFEST);
+            for (String entryName : selector.select(entryNames, manifest == null ? null : () -> zipFile.getInputStream(manifest))) {
+                imports.addAll(extractImports(zipFile, zipFile.getEntry(entryName), extractor));
+            }
         } catch (Exception e) {
             throw new ODTFileReadingException("Error reading " + odtFile.getName() + ": ", e);
         }
         return imports;
     }
 
+    /**
+     * Extracts imports from flat odt file, which is a single XML document instead of a zip archive
+     * @param odtFile .fodt file
+     * @param extractor extractor which parses the document
+     * @return imports mentioned in the document
+     * @throws ODTFileReadingException when file can not be read or parsed
+     */
+    static List<String> extractImportsFromFlatXML(File odtFile, ImportExtractor extractor) throws ODTFileReadingException {
+        long start = System.nanoTime();
+        try {
+            return extractor.extractImports(odtFile.getName(),
+                    () -> Metrics.get().measureInflate(new BufferedInputStream(new FileInputStream(odtFile))));
+        } catch (Exception e) {
+            throw new ODTFileReadingException("Error reading " + odtFile.getName() + ": ", e);
+        } finally {
+            Metrics.get().record(Metrics.ENTRY_PARSE_SECONDS, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @param file odt file
+     * @return true for flat XML documents (.fodt)
+     */
+    static boolean isFlatODT(File file) {
+        return file.getName().toLowerCase(Locale.ROOT).endsWith(".fodt");
+    }
+
     /**
      * Generates output in JSON format
      * @param fileImportsMap Map of odt files with their imports
      * @return jsonArray
      */
-    private static JSONArray generateJsonOutput(Map<File,List<String>> fileImportsMap) {
+    static JSONArray generateJsonOutput(Map<File,List<String>> fileImportsMap) {
         JSONArray jsonArray = new JSONArray();
 
         for (Map.Entry<File, List<String>> entry : fileImportsMap.entrySet()) {
@@ -0,0 +1,320 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.example.errors.ImportMappingException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP service which keeps imports of the whole folder in memory.
+ * Folder is scanned once and then kept up to date by ODTWatcher, so queries are answered without reading files.
+ * Service listens only on loopback address. Requests sent by web pages, which carry an Origin header, are refused,
+ * and POST requests must carry the REQUEST_HEADER header, which a page can not add without the service allowing it.
+ *
+ * GET /scan - report of all files, same as console report
+ * GET /imports?file=path - imports of a single file
+ * GET /importers?block=block_1.odt - files importing block directly and all affected files
+ * POST /rewrite?old=..&amp;new=..[&amp;file=name][&amp;dryRun=true] - rewrites imports, body may hold mapping table lines
+ * GET /metrics - scan and rewrite metrics in Prometheus text format
+ */
+public class ODTService implements Closeable {
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+    /**
+     * Header required on POST requests
+     */
+    public static final String REQUEST_HEADER = "X-ODT-Request";
+
+    private final ODTReader reader;
+    private final String folderPath;
+    private final long debounceMillis;
+    private final RewriteOptions options;
+    private final ExecutorService rewriteExecutor;
+
+    private final CountDownLatch ready = new CountDownLatch(1);
+    // Rewrites of the same files must not overlap
+    private final Object rewriteLock = new Object();
+    private volatile Snapshot snapshot;
+
+    private HttpServer server;
+    private Thread watcherThread;
+
+    /**
+     * Imports of all files at one point in time
+     */
+    private record Snapshot(SortedMap<File, List<String>> fileImportsMap, ReverseImportIndex reverseIndex) {
+    }
+
+    /**
+     * @param reader reader used to extract imports
+     * @param folderPath folder which contains odt files
+     * @param debounceMillis time without changes before new imports are visible
+     * @param options settings used for rewrites
+     * @param rewriteExecutor executor used to rewrite files in parallel, null to rewrite on request thread
+     */
+    public ODTService(ODTReader reader, String folderPath, long debounceMillis, RewriteOptions options,
+                      ExecutorService rewriteExecutor) {
+        this.reader = reader;
+        this.folderPath = folderPath;
+        this.debounceMillis = debounceMillis;
+        this.options = options;
+        this.rewriteExecutor = rewriteExecutor;
+    }
+
+    /**
+     * Starts watching the folder and listening for requests
+     * @param port port on loopback address, 0 picks a free port
+     * @throws IOException when port can not be bound
+     */
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/scan", exchange -> handle(exchange, "GET", this::scan));
+        server.createContext("/imports", exchange -> handle(exchange, "GET", this::imports));
+        server.createContext("/importers", exchange -> handle(exchange, "GET", this::importers));
+        server.createContext("/rewrite", exchange -> handle(exchange, "POST", this::rewrite));
+        server.createContext("/metrics", exchange -> handle(exchange, "GET", (parameters, body) -> Metrics.get().toPrometheus()));
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "odt-service");
+            thread.setDaemon(true);
+            return thread;
+        }));
+
+        ODTWatcher watcher = new ODTWatcher(reader, folderPath, debounceMillis, this::publish);
+        watcherThread = new Thread(() -> {
+            try {
+                watcher.run();
+            } catch (IOException e) {
+                System.err.println("Watching " + folderPath + " failed: " + e.getMessage());
+                close();
+            }
+        }, "odt-service-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        server.start();
+        System.out.println("Serving " + folderPath + " on http://" + server.getAddress().getHostString() + ":" + getPort());
+    }
+
+    /**
+     * @return port service listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Waits until service is closed
+     * @throws InterruptedException when waiting thread is interrupted
+     */
+    public void awaitClosed() throws InterruptedException {
+        watcherThread.join();
+    }
+
+    /**
+     * Stops watching and listening
+     */
+    @Override
+    public void close() {
+        if (watcherThread != null) {
+            watcherThread.interrupt();
+        }
+        if (server != null) {
+            server.stop(0);
+            ((ExecutorService) server.getExecutor()).shutdownNow();
+        }
+        // Requests waiting for the first scan are released
+        ready.countDown();
+    }
+
+    /**
+     * Receives watcher results, copied so requests never see a half updated result
+     */
+    private void publish(SortedMap<File, List<String>> fileImportsMap) {
+        SortedMap<File, List<String>> copy = new TreeMap<>(fileImportsMap);
+        snapshot = new Snapshot(copy, ReverseImportIndex.build(copy));
+        ready.countDown();
+    }
+
+    private JSONArray scan(Map<String, String> parameters, String body) throws InterruptedException {
+        return ODTReader.generateJsonOutput(awaitSnapshot().fileImportsMap());
+    }
+
+    private JSONObject imports(Map<String, String> parameters, String body) throws InterruptedException {
+        File file = resolve(required(parameters, "file"));
+        List<String> imports = awaitSnapshot().fileImportsMap().get(file);
+        if (imports == null) {
+            throw new NoSuchElementException("Not scanned: " + file);
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("file", file.getPath());
+        result.put("imports", new JSONArray(imports));
+        return result;
+    }
+
+    private JSONObject importers(Map<String, String> parameters, String body) throws InterruptedException {
+        String block = required(parameters, "block");
+        ReverseImportIndex reverseIndex = awaitSnapshot().reverseIndex();
+
+        JSONObject result = new JSONObject();
+        result.put("import", block);
+        result.put("direct", new JSONArray(reverseIndex.directImporters(block).stream().map(File::getPath).toList()));
+        result.put("affected", new JSONArray(reverseIndex.affectedBy(block).stream().map(File::getPath).toList()));
+        return result;
+    }
+
+    private JSONArray rewrite(Map<String, String> parameters, String body) throws Exception {
+        ImportMatcher matcher;
+        if (parameters.containsKey("old")) {
+            matcher = ImportMatcher.of(parameters.get("old"), required(parameters, "new"));
+        } else {
+            Map<String, String> mappings = ImportMatcher.parseMappings(body.lines().toList(), "request body");
+            if (mappings.isEmpty()) {
+                throw new IllegalArgumentException("Missing parameter old or mapping lines in body");
+            }
+            matcher = new ImportMatcher(mappings);
+        }
+        RewriteOptions requestOptions = new RewriteOptions(options.selector(),
+                Boolean.parseBoolean(parameters.getOrDefault("dryRun", "false")), options.compressionLevels(),
+                options.walker(), options.rewriter());
+
+        List<RewriteResult> results;
+        synchronized (rewriteLock) {
+            if (parameters.containsKey("file")) {
+                // Only files found by the scan of the folder can be rewritten
+                File file = resolve(parameters.get("file"));
+                if (!awaitSnapshot().fileImportsMap().containsKey(file) || !file.isFile()) {
+                    throw new NoSuchElementException("Not scanned: " + file);
+                }
+                results = List.of(new RewriteResult(file, ODTEditor.rewriteOdt(file, matcher, requestOptions), null));
+            } else {
+                // Imports in memory tell which files contain an old import, so the folder is not walked and parsed again
+                List<File> files = new ArrayList<>();
+                for (Map.Entry<File, List<String>> entry : awaitSnapshot().fileImportsMap().entrySet()) {
+                    if (entry.getValue().stream().anyMatch(text -> matcher.replace(text) != text)) {
+                        files.add(entry.getKey());
+                    }
+                }
+                results = ODTEditor.modifyAllOdtImports(new FileCatalog(files), matcher, requestOptions, rewriteExecutor);
+            }
+        }
+
+        JSONArray json = new JSONArray();
+        for (RewriteResult result : results) {
+            JSONObject item = new JSONObject();
+            item.put("file", result.file().getPath());
+            item.put("replacements", result.replacements());
+            if (result.error() != null) {
+                item.put("error", result.error());
+            }
+            json.put(item);
+        }
+        return json;
+    }
+
+    private Snapshot awaitSnapshot() throws InterruptedException {
+        ready.await();
+        if (snapshot == null) {
+            throw new IllegalStateException("Service is stopped");
+        }
+        return snapshot;
+    }
+
+    /**
+     * Resolves file relative to served folder, absolute paths are used as given
+     */
+    private File resolve(String path) {
+        File file = new File(path);
+        return (file.isAbsolute() ? file : new File(folderPath, path)).getAbsoluteFile().toPath().normalize().toFile();
+    }
+
+    private static String required(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    /**
+     * Request handler returning JSON, or plain text when result is a String
+     */
+    @FunctionalInterface
+    private interface Endpoint {
+        Object handle(Map<String, String> parameters, String body) throws Exception;
+    }
+
+    private static void handle(HttpExchange exchange, String method, Endpoint endpoint) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals(method)) {
+                respond(exchange, 405, error("Use " + method));
+                return;
+            }
+            // Browsers send Origin with cross-site requests, simple POST requests could otherwise rewrite files
+            if (exchange.getRequestHeaders().containsKey("Origin")) {
+                respond(exchange, 403, error("Requests from web pages are not accepted"));
+                return;
+            }
+            if (method.equals("POST") && !exchange.getRequestHeaders().containsKey(REQUEST_HEADER)) {
+                respond(exchange, 403, error("Missing header " + REQUEST_HEADER));
+                return;
+            }
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            Object result = endpoint.handle(parseQuery(exchange.getRequestURI().getRawQuery()), body);
+            respond(exchange, 200, result.toString(),
+                    result instanceof String ? "text/plain; version=0.0.4; charset=utf-8" : JSON_CONTENT_TYPE);
+        } catch (IllegalArgumentException | ImportMappingException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        } catch (NoSuchElementException e) {
+            respond(exchange, 404, error(e.getMessage()));
+        } catch (Exception e) {
+            System.err.println("Request " + exchange.getRequestURI() + " failed: " + e.getMessage());
+            respond(exchange, 500, error(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String error(String message) {
+        return new JSONObject().put("error", String.valueOf(message)).toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        respond(exchange, status, json, JSON_CONTENT_TYPE);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String content, String contentType) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,240 @@
+package org.example;
+
+import org.example.errors.ODTFileReadingException;
+import org.example.errors.XMLFileReadingException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Keeps imports of all odt files in a folder up to date.
+ * After one full scan only created or modified files are read again, deleted files are removed.
+ * Changes are collected until the folder is quiet for the debounce time, then the result is published.
+ */
+public class ODTWatcher {
+    private final ODTReader reader;
+    private final Path root;
+    private final long debounceMillis;
+    private final ScanPublisher publisher;
+    // Sorted by path, same order as full scan
+    private final SortedMap<File, List<String>> fileImportsMap = new ConcurrentSkipListMap<>();
+    private final Map<WatchKey, Path> watchedFolders = new HashMap<>();
+    // Files written by this run, e.g. report, their changes must not start a new batch
+    private final Set<Path> ignored = new HashSet<>();
+
+    private WatchService watchService;
+
+    /**
+     * Receives full result after each batch of changes
+     */
+    @FunctionalInterface
+    public interface ScanPublisher {
+        void publish(SortedMap<File, List<String>> fileImportsMap) throws IOException;
+    }
+
+    /**
+     * @param reader reader used to extract imports
+     * @param folderPath folder which contains odt files
+     * @param debounceMillis time without changes before result is published
+     * @param publisher receives result after the first scan and after each batch of changes
+     */
+    public ODTWatcher(ODTReader reader, String folderPath, long debounceMillis, ScanPublisher publisher) {
+        this.reader = reader;
+        this.root = Paths.get(folderPath).toAbsolutePath();
+        this.debounceMillis = debounceMillis;
+        this.publisher = publisher;
+        if (reader.getIndex() != null) {
+            ignore(reader.getIndex().getFile());
+        }
+    }
+
+    /**
+     * Ignores changes of a file written by this run, together with its temporary file
+     * @param file file which may be inside the watched folder
+     */
+    public void ignore(File file) {
+        ignored.add(file.getAbsoluteFile().toPath().normalize());
+        ignored.add(new File(file.getAbsolutePath() + ".tmp").toPath().normalize());
+    }
+
+    /**
+     * Scans folder and then watches it until thread is interrupted
+     * @throws IOException when folder can not be watched or result can not be published
+     */
+    public void run() throws IOException {
+        try (WatchService service = root.getFileSystem().newWatchService()) {
+            watchService = service;
+            // Register first, so files saved during the scan are not missed
+            registerAll(root);
+            fullScan();
+
+            Set<Path> changed = new LinkedHashSet<>();
+            while (!Thread.currentThread().isInterrupted()) {
+                // Waits for first change, then keeps collecting until folder is quiet
+                WatchKey key = changed.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+
+                if (key == null) {
+                    applyChanges(changed);
+                    changed.clear();
+                    continue;
+                }
+
+                if (!collectEvents(key, changed)) {
+                    // Events were lost, only a full scan gives correct result
+                    changed.clear();
+                    fullScan();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reads events of one folder
+     * @return false when events overflowed
+     */
+    private boolean collectEvents(WatchKey key, Set<Path> changed) throws IOException {
+        Path folder = watchedFolders.get(key);
+        boolean complete = true;
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                complete = false;
+                continue;
+            }
+            Path path = folder.resolve((Path) event.context());
+            if (Files.isDirectory(path)) {
+                if (event.kind() == ENTRY_CREATE) {
+                    // New folder may already contain files, walked with the same rules as the full scan
+                    registerAll(path);
+                    reader.getWalker().walk(root, path, file -> {
+                        if (isScanned(file.toPath())) {
+                            changed.add(file.toPath());
+                        }
+                    });
+                }
+            } else if (isScanned(path) || (!Files.exists(path, LinkOption.NOFOLLOW_LINKS) && isTracked(path))) {
+                // Deleted folders are recognized by the files read from them
+                changed.add(path);
+            }
+        }
+
+        if (!key.reset()) {
+            watchedFolders.remove(key);
+        }
+        return complete;
+    }
+
+    /**
+     * @return true when path is a file the walker would scan
+     */
+    private boolean isScanned(Path path) {
+        return !ignored.contains(path.normalize()) && reader.getWalker().accepts(root, path);
+    }
+
+    /**
+     * @return true when path is a known file or a folder containing one
+     */
+    private boolean isTracked(Path path) {
+        File deleted = path.toFile();
+        String folderPrefix = deleted.getPath() + File.separator;
+        for (File file : fileImportsMap.keySet()) {
+            if (file.equals(deleted) || file.getPath().startsWith(folderPrefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads changed files again, removes deleted ones and publishes result when any file changed
+     */
+    private void applyChanges(Set<Path> changed) throws IOException {
+        boolean updated = false;
+        for (Path path : changed) {
+            File file = path.toFile();
+            if (file.isFile()) {
+                if (isScanned(path)) {
+                    readFile(file);
+                    updated = true;
+                }
+            } else if (!file.exists()) {
+                // Deleted file or whole folder
+                updated |= removeUnder(file);
+            }
+        }
+        if (!updated) {
+            return;
+        }
+        reader.saveIndex();
+        publisher.publish(fileImportsMap);
+    }
+
+    private void readFile(File file) {
+        try {
+            fileImportsMap.put(file, reader.readImports(file));
+        } catch (ODTFileReadingException | XMLFileReadingException e) {
+            // File may still be being written, it is read again on its next change
+            fileImportsMap.remove(file);
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * @return true when any file was removed
+     */
+    private boolean removeUnder(File deleted) {
+        String folderPrefix = deleted.getPath() + File.separator;
+        boolean removed = false;
+        Iterator<File> files = fileImportsMap.keySet().iterator();
+        while (files.hasNext()) {
+            File file = files.next();
+            if (file.equals(deleted) || file.getPath().startsWith(folderPrefix)) {
+                files.remove();
+                reader.forget(file);
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    private void fullScan() throws IOException {
+        fileImportsMap.clear();
+        reader.scanODTFiles(root.toString(), fileImportsMap::put);
+        publisher.publish(fileImportsMap);
+    }
+
+    /**
+     * Watches folder and its sub folders which the walker would visit, unreadable folders are reported and skipped
+     */
+    private void registerAll(Path start) throws IOException {
+        ODTFileWalker walker = reader.getWalker();
+        // Links are filtered by the walker, a link loop is reported as a failed folder
+        Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!walker.descendsInto(root, dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                watchedFolders.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                System.err.println("Could not watch " + file + ": " + e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
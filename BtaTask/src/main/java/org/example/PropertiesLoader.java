@@ -5,6 +5,7 @@ import org.example.errors.PropertiesLoadException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
+import java.util.function.Function;
 import java.util.logging.Logger;
 
 public class PropertiesLoader {
@@ -26,4 +27,80 @@ public class PropertiesLoader {
         }
         return properties;
     }
+
+    /**
+     * Reads whole number property
+     * @param properties loaded properties
+     * @param key property name
+     * @param defaultValue value used when property is not set
+     * @return property value
+     * @throws PropertiesLoadException when value is not a whole number
+     */
+    public static int getInt(Properties properties, String key, int defaultValue) throws PropertiesLoadException {
+        return (int) parseNumber(properties, key, defaultValue, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads whole number property which may not fit into int
+     * @param properties loaded properties
+     * @param key property name
+     * @param defaultValue value used when property is not set
+     * @return property value
+     * @throws PropertiesLoadException when value is not a whole number
+     */
+    public static long getLong(Properties properties, String key, long defaultValue) throws PropertiesLoadException {
+        return parseNumber(properties, key, defaultValue, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    private static long parseNumber(Properties properties, String key, long defaultValue, long min, long max)
+            throws PropertiesLoadException {
+        String value = properties.getProperty(key, "").trim();
+        if (value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            long number = Long.parseLong(value);
+            if (number < min || number > max) {
+                throw new NumberFormatException();
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new PropertiesLoadException("Property " + key + " must be a whole number, was: " + value, e);
+        }
+    }
+
+    /**
+     * Reads property which selects a setting, e.g. a type name
+     * @param properties loaded properties
+     * @param key property name
+     * @param defaultValue value used when property is not set
+     * @param parser creates the setting, throws IllegalArgumentException for unknown values
+     * @return created setting
+     * @throws PropertiesLoadException when parser rejects the value
+     */
+    public static <T> T getSetting(Properties properties, String key, String defaultValue, Function<String, T> parser)
+            throws PropertiesLoadException {
+        String value = properties.getProperty(key, defaultValue);
+        try {
+            return parser.apply(value);
+        } catch (IllegalArgumentException e) {
+            throw new PropertiesLoadException("Property " + key + " is invalid: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Replaces loaded properties with command line arguments, so several processes can share one properties file
+     * @param properties loaded properties
+     * @param args arguments in key=value form
+     * @throws PropertiesLoadException when argument is not in key=value form
+     */
+    public static void applyOverrides(Properties properties, String[] args) throws PropertiesLoadException {
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new PropertiesLoadException("Argument " + arg + " is not in key=value form.");
+            }
+            properties.setProperty(arg.substring(0, separator).trim(), arg.substring(separator + 1).trim());
+        }
+    }
 }
@@ -0,0 +1,62 @@
+package org.example;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes scan report as results arrive, so the whole report never has to be kept in memory
+ */
+public interface ReportWriter extends ScanListener, Closeable {
+
+    /**
+     * Creates report writer
+     * @param format json (pretty printed array, same as before) or ndjson (one JSON record per line)
+     * @param output output file path, empty or "-" writes to standard output
+     * @param gzip compresses output with gzip
+     * @return report writer
+     * @throws IOException when output file can not be created
+     */
+    static ReportWriter create(String format, String output, boolean gzip) throws IOException {
+        // Checked first, so an unknown format does not create the output file
+        checkFormat(format);
+        OutputStream out;
+        if (output == null || output.isEmpty() || output.equals("-")) {
+            // Standard output must stay open after the report
+            out = new FilterOutputStream(System.out) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    this.out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+        } else {
+            out = new FileOutputStream(output);
+        }
+        if (gzip) {
+            out = new GZIPOutputStream(out, 64 * 1024);
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+
+        if (format == null || format.isEmpty() || format.equalsIgnoreCase("json")) {
+            return new JsonArrayReportWriter(writer);
+        }
+        return new NdjsonReportWriter(writer);
+    }
+
+    /**
+     * @param format report format
+     * @return the format when it is json, ndjson or empty
+     * @throws IllegalArgumentException when format is unknown
+     */
+    static String checkFormat(String format) {
+        if (format == null || format.isEmpty() || format.equalsIgnoreCase("json") || format.equalsIgnoreCase("ndjson")) {
+            return format;
+        }
+        throw new IllegalArgumentException("Unknown report format: " + format);
+    }
+}
@@ -0,0 +1,146 @@
+package org.example;
+
+import java.io.File;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Answers which odt files import a given block, directly or through other blocks.
+ * Documents and import targets get integer ids, importers of each target are kept in a BitSet,
+ * so the index stays small for a few hundred thousand documents.
+ */
+public class ReverseImportIndex {
+    private static final Pattern IMPORT_PATTERN = Pattern.compile("\\[import\\s+([^\\]]+?)\\s*]");
+
+    // Document id -> file
+    private final List<File> documents = new ArrayList<>();
+    // Document id -> target id of the document's own name, so blocks can be followed transitively
+    private int[] documentTargets = new int[16];
+    // Normalized target name -> target id
+    private final Map<String, Integer> targetIds = new HashMap<>();
+    // Target id -> ids of documents which import it
+    private final List<BitSet> importers = new ArrayList<>();
+
+    /**
+     * Builds index from scan result
+     * @param fileImportsMap odt files with their imports
+     * @return reverse index
+     */
+    public static ReverseImportIndex build(Map<File, List<String>> fileImportsMap) {
+        ReverseImportIndex index = new ReverseImportIndex();
+        for (Map.Entry<File, List<String>> entry : fileImportsMap.entrySet()) {
+            index.add(entry.getKey(), entry.getValue());
+        }
+        return index;
+    }
+
+    /**
+     * Adds document with its imports
+     * @param file odt file
+     * @param imports imports extracted from the file
+     */
+    public void add(File file, List<String> imports) {
+        int documentId = documents.size();
+        documents.add(file);
+        if (documentId == documentTargets.length) {
+            documentTargets = Arrays.copyOf(documentTargets, documentId * 2);
+        }
+        documentTargets[documentId] = targetId(normalize(file.getName()));
+
+        for (String importText : imports) {
+            for (String target : parseTargets(importText)) {
+                importers.get(targetId(target)).set(documentId);
+            }
+        }
+    }
+
+    /**
+     * Finds files which import block directly
+     * @param block block name or path, e.g. block_1.odt
+     * @return importing files in scan order
+     */
+    public List<File> directImporters(String block) {
+        Integer targetId = targetIds.get(normalize(block));
+        if (targetId == null) {
+            return List.of();
+        }
+        return toFiles(importers.get(targetId));
+    }
+
+    /**
+     * Finds all files affected by a change of block: files importing it
+     * and files importing those, up to any depth
+     * @param block block name or path, e.g. block_1.odt
+     * @return affected files in scan order
+     */
+    public List<File> affectedBy(String block) {
+        Integer start = targetIds.get(normalize(block));
+        if (start == null) {
+            return List.of();
+        }
+
+        BitSet affected = new BitSet(documents.size());
+        BitSet visitedTargets = new BitSet(targetIds.size());
+        Deque<Integer> pending = new ArrayDeque<>();
+        pending.add(start);
+        visitedTargets.set(start);
+
+        while (!pending.isEmpty()) {
+            BitSet direct = importers.get(pending.poll());
+            for (int id = direct.nextSetBit(0); id >= 0; id = direct.nextSetBit(id + 1)) {
+                if (!affected.get(id)) {
+                    affected.set(id);
+                    // Files importing this document are affected too
+                    int target = documentTargets[id];
+                    if (!visitedTargets.get(target)) {
+                        visitedTargets.set(target);
+                        pending.add(target);
+                    }
+                }
+            }
+        }
+        return toFiles(affected);
+    }
+
+    /**
+     * Finds import targets mentioned in extracted import text
+     * @param importText import text, e.g. "[import block_1.odt] (from content.xml)"
+     * @return normalized target names
+     */
+    static List<String> parseTargets(String importText) {
+        List<String> targets = new ArrayList<>();
+        Matcher matcher = IMPORT_PATTERN.matcher(importText);
+        while (matcher.find()) {
+            targets.add(normalize(matcher.group(1)));
+        }
+        return targets;
+    }
+
+    /**
+     * Normalizes block reference to lower case file name without folders
+     */
+    static String normalize(String block) {
+        String name = block.trim().replace('\\', '/');
+        name = name.substring(name.lastIndexOf('/') + 1);
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private int targetId(String target) {
+        Integer id = targetIds.get(target);
+        if (id == null) {
+            id = importers.size();
+            targetIds.put(target, id);
+            importers.add(new BitSet());
+        }
+        return id;
+    }
+
+    private List<File> toFiles(BitSet ids) {
+        List<File> files = new ArrayList<>(ids.cardinality());
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            files.add(documents.get(id));
+        }
+        return files;
+    }
+}
@@ -0,0 +1,191 @@
+package org.example;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Write-ahead journal of a bulk rewrite, so a run which dies partway through can be resumed.
+ * A file is recorded as started before it is rewritten, as staged with the size and modification time of its new
+ * content right before that content is moved over the original, and as finished once it replaced the original.
+ * Staged and finished lines are flushed to disk before the next step.
+ * A restarted run of the same job skips finished files which did not change since. A file which was only started
+ * is finished when it matches its staged line, as the move happened before the crash; otherwise the original
+ * is still in place, its staging file is removed and the file is rewritten again.
+ */
+public class RewriteJournal {
+    public static final String DEFAULT_FILE_NAME = ".odt-rewrite-journal";
+    private static final String JOB = "job";
+    private static final String STARTED = "started";
+    private static final String STAGED = "staged";
+    private static final String FINISHED = "finished";
+
+    /**
+     * State of a finished file when it was recorded
+     */
+    private record Finished(long size, long modified) {
+    }
+
+    private final File journalFile;
+    private final Map<String, Finished> finished = new HashMap<>();
+    private FileOutputStream out;
+
+    private RewriteJournal(File journalFile) {
+        this.journalFile = journalFile;
+    }
+
+    /**
+     * Opens journal, entries written by a run of a different job are dropped
+     * @param journalFile journal file
+     * @param job description of the rewrite, e.g. replacements and entry settings
+     * @return journal ready for appending
+     * @throws IOException when journal can not be read or created
+     */
+    public static RewriteJournal open(File journalFile, String job) throws IOException {
+        RewriteJournal journal = new RewriteJournal(journalFile);
+        String jobId = hash(job);
+        boolean sameJob = false;
+
+        if (journalFile.exists()) {
+            List<String> lines = Files.readAllLines(journalFile.toPath(), StandardCharsets.UTF_8);
+            sameJob = !lines.isEmpty() && lines.get(0).equals(JOB + "\t" + jobId);
+            if (sameJob) {
+                journal.replay(lines);
+            } else {
+                System.out.println("Ignoring rewrite journal of a different job: " + journalFile);
+            }
+        }
+
+        journal.out = new FileOutputStream(journalFile, sameJob);
+        if (!sameJob) {
+            journal.append(JOB + "\t" + jobId, true);
+        }
+        return journal;
+    }
+
+    /**
+     * Reads finished files, a line cut off by a crash is ignored
+     */
+    private void replay(List<String> lines) throws IOException {
+        Set<String> interrupted = new HashSet<>();
+        // Staged content of interrupted files by path
+        Map<String, Finished> staged = new HashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split("\t", 5);
+            try {
+                if (fields[0].equals(STARTED) && fields.length == 2) {
+                    interrupted.add(fields[1]);
+                    staged.remove(fields[1]);
+                } else if (fields[0].equals(STAGED) && fields.length == 4) {
+                    staged.put(fields[3], new Finished(Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+                } else if (fields[0].equals(FINISHED) && fields.length == 5) {
+                    finished.put(fields[4], new Finished(Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+                    interrupted.remove(fields[4]);
+                }
+            } catch (NumberFormatException e) {
+                // Incomplete last line
+            }
+        }
+        for (String path : interrupted) {
+            File file = new File(path);
+            Finished content = staged.get(path);
+            if (content != null && content.size() == file.length() && content.modified() == file.lastModified()) {
+                System.out.println("Rewrite of " + path + " was interrupted after its new content replaced the original");
+                finished.put(path, content);
+            } else {
+                System.out.println("Rewrite of " + path + " was interrupted, original was kept");
+                Files.deleteIfExists(ODTEditor.stagingFile(file).toPath());
+            }
+        }
+    }
+
+    /**
+     * @param file file to rewrite
+     * @return true when the file was finished by an earlier run and did not change since
+     */
+    public synchronized boolean isFinished(File file) {
+        Finished entry = finished.get(file.getAbsolutePath());
+        return entry != null && entry.size() == file.length() && entry.modified() == file.lastModified();
+    }
+
+    /**
+     * Records that file is about to be rewritten
+     * @param file file to rewrite
+     * @throws IOException when journal can not be written
+     */
+    public synchronized void started(File file) throws IOException {
+        append(STARTED + "\t" + file.getAbsolutePath(), false);
+    }
+
+    /**
+     * Records new content of a file before it is moved over the original, the line is on disk when this returns
+     * @param file file which is rewritten
+     * @param stagingFile fully written new content
+     * @throws IOException when journal can not be written
+     */
+    public synchronized void staged(File file, File stagingFile) throws IOException {
+        append(STAGED + "\t" + stagingFile.length() + "\t" + stagingFile.lastModified() + "\t" + file.getAbsolutePath(), true);
+    }
+
+    /**
+     * Records that file was rewritten or needed no change, the line is on disk when this returns
+     * @param file rewritten file
+     * @param replacements number of replaced imports
+     * @throws IOException when journal can not be written
+     */
+    public synchronized void finished(File file, int replacements) throws IOException {
+        String path = file.getAbsolutePath();
+        finished.put(path, new Finished(file.length(), file.lastModified()));
+        append(FINISHED + "\t" + file.length() + "\t" + file.lastModified() + "\t" + replacements + "\t" + path, true);
+    }
+
+    /**
+     * Closes journal
+     * @param complete all files succeeded, journal is deleted; otherwise it is kept for the next run
+     */
+    public synchronized void finish(boolean complete) {
+        try {
+            out.close();
+            if (complete) {
+                Files.deleteIfExists(journalFile.toPath());
+            } else {
+                System.out.println("Rewrite journal kept in " + journalFile + ", run again to resume");
+            }
+        } catch (IOException e) {
+            System.err.println("Could not close rewrite journal: " + e.getMessage());
+        }
+    }
+
+    private void append(String line, boolean sync) throws IOException {
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        if (sync) {
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * @return SHA-256 of job description, journal does not grow with the number of replacements
+     */
+    private static String hash(String job) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest(job.getBytes(StandardCharsets.UTF_8))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.example;
+
+/**
+ * Settings of odt file rewrite
+ * @param selector decides which xml files are parsed, all other entries are copied as they are
+ * @param dryRun only prints planned replacements, files are left untouched
+ * @param compressionLevels deflate level of rewritten entries by type
+ * @param walker finds files for bulk rewrite and the file for single rewrite
+ * @param rewriter replaces imports in each selected xml file
+ */
+public record RewriteOptions(EntrySelector selector, boolean dryRun, CompressionLevels compressionLevels,
+                             ODTFileWalker walker, EntryRewriter rewriter) {
+    /**
+     * Content and styles, files are written, default deflate level, all .odt files, DOM rewrite
+     */
+    public static final RewriteOptions DEFAULT = new RewriteOptions(EntrySelector.DEFAULT, false, CompressionLevels.DEFAULT,
+            ODTFileWalker.DEFAULT, new DomEntryRewriter());
+}
@@ -0,0 +1,12 @@
+package org.example;
+
+import java.io.File;
+
+/**
+ * Result of rewriting imports in a single odt file
+ * @param file odt file
+ * @param replacements number of replaced imports, 0 when file was left untouched
+ * @param error error message, null when rewrite succeeded
+ */
+public record RewriteResult(File file, int replacements, String error) {
+}
@@ -0,0 +1,35 @@
+package org.example;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+public class ScanExecutors {
+    /**
+     * Creates executor used for scanning odt files
+     * @param type executor type: serial, forkjoin or io
+     * @param threads number of threads, 0 or less means default for given type
+     * @return executor or null when files should be processed on calling thread
+     */
+    public static ExecutorService create(String type, int threads) {
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        if (type == null || type.isEmpty() || type.equalsIgnoreCase("serial")) {
+            return null;
+        }
+        if (type.equalsIgnoreCase("forkjoin")) {
+            // CPU bound parsing, one worker per core
+            return new ForkJoinPool(threads > 0 ? threads : cores);
+        }
+        if (type.equalsIgnoreCase("io")) {
+            // Network mounted folders spend most of the time waiting for reads,
+            // so more threads than cores keeps the CPU busy
+            return Executors.newFixedThreadPool(threads > 0 ? threads : cores * 4, runnable -> {
+                Thread thread = new Thread(runnable, "odt-scan-io");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        throw new IllegalArgumentException("Unknown scan executor type: " + type);
+    }
+}
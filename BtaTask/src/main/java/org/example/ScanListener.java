@@ -0,0 +1,19 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives scan results one file at a time, in path order
+ */
+@FunctionalInterface
+public interface ScanListener {
+    /**
+     * Called when imports of a file are extracted
+     * @param file odt file
+     * @param imports imports mentioned in the file
+     * @throws IOException when result can not be written
+     */
+    void fileScanned(File file, List<String> imports) throws IOException;
+}
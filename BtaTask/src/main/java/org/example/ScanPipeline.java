@@ -0,0 +1,404 @@
+package org.example;
+
+import org.example.errors.ODTFileReadingException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Scans folder in stages connected by bounded queues: discover, read and inflate, parse and extract, emit.
+ * Each stage has its own threads, so disk reads and parsing overlap. When a stage falls behind,
+ * the queue before it fills up and the stages before it wait, so memory use does not depend on folder size.
+ * Inflated entries waiting to be parsed are limited by a byte budget: each file takes its inflated size from the budget
+ * before it is read and returns it once parsed. A file keeps at most a quarter of the budget in memory, its other
+ * entries are inflated again from the file while they are parsed, so large documents never wait for the whole budget.
+ * Files are emitted in walk order on the calling thread.
+ */
+class ScanPipeline {
+    static final String READ_STAGE = "read";
+    static final String PARSE_STAGE = "parse";
+    static final String EMIT_STAGE = "emit";
+
+    private final ODTFileWalker walker;
+    private final ImportExtractor extractor;
+    private final EntrySelector selector;
+    private final ImportIndex index;
+    private final Settings settings;
+
+    /**
+     * @param readThreads threads opening files and inflating selected entries
+     * @param parseThreads threads parsing inflated entries
+     * @param queueCapacity capacity of each queue between stages
+     * @param memoryKilobytes inflated entries held in memory at once, in kilobytes
+     */
+    record Settings(int readThreads, int parseThreads, int queueCapacity, int memoryKilobytes) {
+        /**
+         * Creates settings, 0 or less uses defaults
+         * @param readThreads threads reading files, default 2
+         * @param parseThreads threads parsing entries, default one per core
+         * @param queueCapacity capacity of each queue, default 32
+         * @param memoryMegabytes inflated entries held in memory at once, default 256 MB
+         * @return settings
+         */
+        static Settings create(int readThreads, int parseThreads, int queueCapacity, int memoryMegabytes) {
+            return new Settings(readThreads > 0 ? readThreads : 2,
+                    parseThreads > 0 ? parseThreads : Runtime.getRuntime().availableProcessors(),
+                    queueCapacity > 0 ? queueCapacity : 32,
+                    (int) Math.min(Integer.MAX_VALUE, (memoryMegabytes > 0 ? memoryMegabytes : 256) * 1024L));
+        }
+    }
+
+    /**
+     * Selected entry, inflated in memory or read again from the file when parsed
+     */
+    private record EntryContent(String name, ImportExtractor.Source source) {
+    }
+
+    /**
+     * Single file passed from stage to stage
+     */
+    private static final class Job {
+        final long sequence;
+        final File file;
+        long size;
+        long modified;
+        long nanos;
+        List<EntryContent> entries;
+        // Part of the memory budget taken by the file
+        int kilobytes;
+        List<String> imports;
+        Exception error;
+
+        Job(long sequence, File file) {
+            this.sequence = sequence;
+            this.file = file;
+        }
+    }
+
+    ScanPipeline(ODTFileWalker walker, ImportExtractor extractor, EntrySelector selector, ImportIndex index,
+                 Settings settings) {
+        this.walker = walker;
+        this.extractor = extractor;
+        this.selector = selector;
+        this.index = index;
+        this.settings = settings;
+    }
+
+    /**
+     * Runs all stages until every found file is emitted
+     * @param root folder to scan
+     * @param files receives all found files
+     * @param listener receives files sorted by path with their imports
+     * @throws IOException when listener fails or scan is interrupted
+     */
+    void run(Path root, List<File> files, ScanListener listener) throws IOException {
+        BlockingQueue<Job> readQueue = new ArrayBlockingQueue<>(settings.queueCapacity());
+        BlockingQueue<Job> parseQueue = new ArrayBlockingQueue<>(settings.queueCapacity());
+        BlockingQueue<Job> emitQueue = new ArrayBlockingQueue<>(settings.queueCapacity());
+        // Files waiting for an earlier file to be emitted are counted too, so reordering can not grow without limit
+        Semaphore inFlight = new Semaphore(settings.queueCapacity() * 3 + settings.readThreads() + settings.parseThreads());
+        Semaphore memory = new Semaphore(settings.memoryKilobytes());
+        // Completed when a stage thread dies, so emit does not wait for files which will never arrive
+        CompletableFuture<Void> failure = new CompletableFuture<>();
+
+        ExecutorService discoverer = newStage("odt-pipeline-discover", 1);
+        ExecutorService readers = newStage("odt-pipeline-read", settings.readThreads());
+        ExecutorService parsers = newStage("odt-pipeline-parse", settings.parseThreads());
+        try {
+            Future<Long> discovered = discoverer.submit(() -> {
+                long[] sequence = {0};
+                walker.walk(root, file -> {
+                    try {
+                        inFlight.acquire();
+                        files.add(file);
+                        put(readQueue, new Job(sequence[0]++, file), READ_STAGE);
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException("Scan interrupted");
+                    }
+                });
+                return sequence[0];
+            });
+            for (int i = 0; i < settings.readThreads(); i++) {
+                readers.submit(() -> work(readQueue, failure, job -> {
+                    read(job, memory);
+                    // Files taken from the index and unreadable files skip parsing
+                    boolean parse = job.error == null && job.imports == null;
+                    put(parse ? parseQueue : emitQueue, job, parse ? PARSE_STAGE : EMIT_STAGE);
+                }));
+            }
+            for (int i = 0; i < settings.parseThreads(); i++) {
+                parsers.submit(() -> work(parseQueue, failure, job -> {
+                    parse(job, memory);
+                    put(emitQueue, job, EMIT_STAGE);
+                }));
+            }
+
+            emit(discovered, failure, emitQueue, inFlight, listener);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Scan interrupted");
+        } finally {
+            discoverer.shutdownNow();
+            readers.shutdownNow();
+            parsers.shutdownNow();
+        }
+    }
+
+    /**
+     * Passes parsed files on in walk order until all discovered files are emitted
+     */
+    private void emit(Future<Long> discovered, CompletableFuture<Void> failure, BlockingQueue<Job> emitQueue,
+                      Semaphore inFlight, ScanListener listener) throws IOException, InterruptedException {
+        Map<Long, Job> waiting = new HashMap<>();
+        long next = 0;
+        while (!discovered.isDone() || next < total(discovered)) {
+            if (failure.isCompletedExceptionally()) {
+                try {
+                    failure.join();
+                } catch (CompletionException e) {
+                    throw new IOException("Scan stage failed", e.getCause());
+                }
+            }
+            Job job = emitQueue.poll(100, TimeUnit.MILLISECONDS);
+            if (job == null) {
+                continue;
+            }
+            waiting.put(job.sequence, job);
+            while (waiting.containsKey(next)) {
+                Job ready = waiting.remove(next++);
+                inFlight.release();
+                if (ready.error != null) {
+                    Metrics.get().error(ready.error);
+                    System.err.println(ready.error.getMessage());
+                } else {
+                    Metrics.get().recordDocument(ready.file, ready.nanos);
+                    listener.fileScanned(ready.file, ready.imports);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of discovered files, walk errors are thrown
+     */
+    private static long total(Future<Long> discovered) throws IOException, InterruptedException {
+        try {
+            return discovered.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException("Walking folder failed", e.getCause());
+        }
+    }
+
+    /**
+     * Opens file and inflates selected entries, or takes imports from the index when file did not change
+     * @param memory budget of inflated entries in kilobytes, taken before entries are inflated
+     */
+    private void read(Job job, Semaphore memory) throws InterruptedException {
+        long start = System.nanoTime();
+        job.size = job.file.length();
+        job.modified = job.file.lastModified();
+        if (index != null) {
+            job.imports = index.get(job.file, job.size, job.modified);
+        }
+        if (job.imports == null) {
+            try {
+                job.entries = readEntries(job, memory);
+            } catch (IOException | RuntimeException | Error e) {
+                // Also an OutOfMemoryError while inflating, so the file is still emitted and the scan goes on
+                job.error = new ODTFileReadingException("Error reading " + job.file.getName() + ": ", e);
+                job.entries = null;
+                releaseMemory(job, memory);
+            }
+        }
+        job.nanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Returns budget taken by the file
+     */
+    private static void releaseMemory(Job job, Semaphore memory) {
+        memory.release(job.kilobytes);
+        job.kilobytes = 0;
+    }
+
+    /**
+     * @return kilobytes of an inflated size, rounded up
+     */
+    private static int kilobytes(long size) {
+        return (int) Math.min(Integer.MAX_VALUE, (size + 1023) / 1024);
+    }
+
+    private List<EntryContent> readEntries(Job job, Semaphore memory) throws IOException, InterruptedException {
+        File file = job.file;
+        // A single file holds at most a quarter of the budget
+        int fileLimit = Math.max(1, settings.memoryKilobytes() / 4);
+        if (ODTReader.isFlatODT(file)) {
+            int needed = kilobytes(job.size);
+            if (needed > fileLimit) {
+                return List.of(new EntryContent(file.getName(),
+                        () -> Metrics.get().measureInflate(Files.newInputStream(file.toPath()))));
+            }
+            memory.acquire(needed);
+            job.kilobytes = needed;
+            try (InputStream in = Metrics.get().measureInflate(Files.newInputStream(file.toPath()))) {
+                byte[] data = in.readAllBytes();
+                return List.of(new EntryContent(file.getName(), () -> new ByteArrayInputStream(data)));
+            }
+        }
+        List<EntryContent> entries = new ArrayList<>();
+        try (ZipFile zipFile = new ZipFile(file)) {
+            List<String> entryNames = new ArrayList<>();
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry entry = zipEntries.nextElement();
+                if (!entry.isDirectory()) {
+                    entryNames.add(entry.getName());
+                }
+            }
+
+            ZipEntry manifest = zipFile.getEntry(EntrySelector.MANIFEST);
+            List<ZipEntry> selected = new ArrayList<>();
+            for (String entryName : selector.select(entryNames, manifest == null ? null : () -> zipFile.getInputStream(manifest))) {
+                ZipEntry entry = zipFile.getEntry(entryName);
+                // Skips empty file
+                if (entry.getSize() == 0) {
+                    System.out.println("Skipping empty file: " + entryName);
+                    continue;
+                }
+                selected.add(entry);
+            }
+
+            // Entries which fit into the limit of the file are inflated now, others while they are parsed
+            Set<ZipEntry> inMemory = new HashSet<>();
+            int needed = 0;
+            for (ZipEntry entry : selected) {
+                int size = kilobytes(entry.getSize());
+                if (entry.getSize() >= 0 && needed + size <= fileLimit) {
+                    inMemory.add(entry);
+                    needed += size;
+                }
+            }
+            memory.acquire(needed);
+            job.kilobytes = needed;
+
+            for (ZipEntry entry : selected) {
+                if (!inMemory.contains(entry)) {
+                    entries.add(new EntryContent(entry.getName(), () -> openEntry(file, entry.getName())));
+                    continue;
+                }
+                try (InputStream in = Metrics.get().measureInflate(zipFile.getInputStream(entry))) {
+                    byte[] data = in.readAllBytes();
+                    entries.add(new EntryContent(entry.getName(), () -> new ByteArrayInputStream(data)));
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Opens entry of a file which is not open any more, the file is closed together with the stream
+     */
+    private static InputStream openEntry(File file, String entryName) throws IOException {
+        ZipFile zipFile = new ZipFile(file);
+        try {
+            ZipEntry entry = zipFile.getEntry(entryName);
+            if (entry == null) {
+                throw new IOException("Entry " + entryName + " disappeared from " + file);
+            }
+            return new FilterInputStream(Metrics.get().measureInflate(zipFile.getInputStream(entry))) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        zipFile.close();
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            zipFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Extracts imports from inflated entries and stores them in the index
+     * @param memory budget returned once the entries are parsed
+     */
+    private void parse(Job job, Semaphore memory) {
+        long start = System.nanoTime();
+        List<String> imports = new ArrayList<>();
+        try {
+            for (EntryContent entry : job.entries) {
+                long entryStart = System.nanoTime();
+                try {
+                    imports.addAll(extractor.extractImports(entry.name(), entry.source()));
+                } finally {
+                    Metrics.get().record(Metrics.ENTRY_PARSE_SECONDS, System.nanoTime() - entryStart);
+                }
+            }
+            job.imports = imports;
+            if (index != null) {
+                index.put(job.file, job.size, job.modified, imports);
+            }
+        } catch (Throwable e) {
+            job.error = new ODTFileReadingException("Error reading " + job.file.getName() + ": ", e);
+        }
+        // Inflated content is not needed any more
+        job.entries = null;
+        releaseMemory(job, memory);
+        job.nanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Work done by a stage on a single file
+     */
+    @FunctionalInterface
+    private interface Step {
+        void accept(Job job) throws InterruptedException;
+    }
+
+    /**
+     * Takes files from queue until the stage is shut down
+     * @param failure completed with the error when the step fails outside of a file, e.g. while queueing it
+     */
+    private static void work(BlockingQueue<Job> queue, CompletableFuture<Void> failure, Step step) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                step.accept(queue.take());
+            }
+        } catch (InterruptedException e) {
+            // Stage is shut down after all files are emitted
+        } catch (Throwable e) {
+            failure.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Adds file to queue, waits while the queue is full
+     */
+    private static void put(BlockingQueue<Job> queue, Job job, String stage) throws InterruptedException {
+        queue.put(job);
+        Metrics.get().recordQueueDepth(stage, queue.size(), queue.size() + queue.remainingCapacity());
+    }
+
+    private static ExecutorService newStage(String name, int threads) {
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
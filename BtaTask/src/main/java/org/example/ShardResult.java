@@ -0,0 +1,152 @@
+package org.example;
+
+import org.example.errors.ShardMergeException;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Partial scan result of one shard. Each worker process scans only its shard of the folder and writes a partial file,
+ * merging all partials gives the same files in the same order as a single process scan.
+ * Files are stored by path relative to the scanned folder, so partials from different machines can be merged.
+ */
+public class ShardResult {
+    public static final int VERSION = 1;
+
+    private ShardResult() {
+    }
+
+    /**
+     * @param shardIndex shard of the worker
+     * @param shardCount number of shards
+     * @return default partial file name of the shard
+     */
+    public static String defaultFileName(int shardIndex, int shardCount) {
+        return "odt-shard-" + shardIndex + "-of-" + shardCount + ".json";
+    }
+
+    /**
+     * Writes partial result. Written to a temporary file first, so a merge never reads half written partial.
+     * @param output partial file
+     * @param shardIndex shard of the worker
+     * @param shardCount number of shards
+     * @param settings description of settings which change extracted imports, all shards must use the same
+     * @param folderPath scanned folder
+     * @param fileImportsMap scanned files with their imports
+     * @throws IOException when file can not be written
+     */
+    public static void write(File output, int shardIndex, int shardCount, String settings, String folderPath,
+                             Map<File, List<String>> fileImportsMap) throws IOException {
+        Path root = Paths.get(folderPath).toAbsolutePath();
+        JSONArray files = new JSONArray();
+        for (Map.Entry<File, List<String>> entry : fileImportsMap.entrySet()) {
+            JSONObject file = new JSONObject();
+            file.put("path", toRelativePath(root, entry.getKey()));
+            file.put("imports", new JSONArray(entry.getValue()));
+            files.put(file);
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("version", VERSION);
+        json.put("shardIndex", shardIndex);
+        json.put("shardCount", shardCount);
+        json.put("settings", settings);
+        json.put("files", files);
+
+        File tempFile = new File(output.getAbsolutePath() + ".tmp");
+        Files.writeString(tempFile.toPath(), json.toString(), StandardCharsets.UTF_8);
+        Files.move(tempFile.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Merges partial results of all shards
+     * @param partials partial files, one for each shard
+     * @param folderPath scanned folder, files of the result are resolved against it
+     * @return odt files sorted by path with their imports, same order as a single process scan
+     * @throws ShardMergeException when a partial can not be read, a shard is missing or repeated, or settings differ
+     */
+    public static Map<File, List<String>> merge(List<File> partials, String folderPath) throws ShardMergeException {
+        // Walker visits files in the order of their relative paths with / separators
+        SortedMap<String, List<String>> merged = new TreeMap<>();
+        Map<Integer, File> shards = new TreeMap<>();
+        int shardCount = -1;
+        String settings = null;
+
+        for (File partial : partials) {
+            JSONObject json;
+            try {
+                json = new JSONObject(Files.readString(partial.toPath(), StandardCharsets.UTF_8));
+            } catch (IOException | JSONException e) {
+                throw new ShardMergeException("Could not read shard result " + partial + ": " + e.getMessage(), e);
+            }
+            if (json.optInt("version") != VERSION) {
+                throw new ShardMergeException("Unsupported shard result version in " + partial);
+            }
+
+            int index = json.getInt("shardIndex");
+            int count = json.getInt("shardCount");
+            String partialSettings = json.optString("settings", "");
+            if (shardCount == -1) {
+                shardCount = count;
+                settings = partialSettings;
+            } else if (count != shardCount) {
+                throw new ShardMergeException("Shard result " + partial + " is one of " + count + " shards, expected "
+                        + shardCount);
+            } else if (!partialSettings.equals(settings)) {
+                throw new ShardMergeException("Shard result " + partial + " was scanned with different settings");
+            }
+            File previous = shards.put(index, partial);
+            if (previous != null) {
+                throw new ShardMergeException("Shard " + index + " is in both " + previous + " and " + partial);
+            }
+
+            JSONArray files = json.getJSONArray("files");
+            for (int i = 0; i < files.length(); i++) {
+                JSONObject file = files.getJSONObject(i);
+                JSONArray importsJson = file.getJSONArray("imports");
+                List<String> imports = new ArrayList<>(importsJson.length());
+                for (int j = 0; j < importsJson.length(); j++) {
+                    imports.add(importsJson.getString(j));
+                }
+                merged.put(file.getString("path"), imports);
+            }
+        }
+
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            if (!shards.containsKey(i)) {
+                missing.add(i);
+            }
+        }
+        if (shardCount == -1 || !missing.isEmpty()) {
+            throw new ShardMergeException("Missing shard results: " + (shardCount == -1 ? "all" : missing));
+        }
+
+        Map<File, List<String>> fileImportsMap = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : merged.entrySet()) {
+            fileImportsMap.put(new File(folderPath, entry.getKey()), entry.getValue());
+        }
+        return fileImportsMap;
+    }
+
+    /**
+     * @return path of file relative to root with / separators, same on every platform
+     */
+    private static String toRelativePath(Path root, File file) {
+        Path relative = root.relativize(file.toPath().toAbsolutePath());
+        StringJoiner path = new StringJoiner("/");
+        for (Path name : relative) {
+            path.add(name.toString());
+        }
+        return path.toString();
+    }
+}
@@ -0,0 +1,492 @@
+package org.example;
+
+import javax.xml.stream.*;
+import javax.xml.stream.events.*;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Rewrites entry in a single forward pass with StAX, without building a DOM.
+ * Only a text:text-input element being read is kept in memory, so memory does not grow with entry size.
+ * The bytes before and after the root element (XML declaration with standalone, comments, line breaks) are copied
+ * as they were read, whitespace is kept and empty element tags are told apart from start and end tag pairs.
+ * The parser turns CRLF into LF, so line breaks are written as CRLF again when the first 64 KB of the entry
+ * use only CRLF; an entry mixing both is written with the line break its first 64 KB use.
+ * StAX does not report how markup was written, so attributes are written with double quotes and single spaces
+ * between them, and character references and entities are written as the characters they stand for,
+ * e.g. {@code x='&#65;'} becomes {@code x="A"}. Entries with a document type or an encoding which is not
+ * ASCII compatible also get their XML declaration written again, without standalone.
+ * Entry is read twice: first to count replacements and collect imports, then again while it is written.
+ */
+public class StaxEntryRewriter implements EntryRewriter {
+    private static final String TEXT_INPUT = "text:text-input";
+    // Bytes searched for the prolog and kept for the bytes after the root element
+    private static final int RAW_LIMIT = 64 * 1024;
+    private static final byte[] BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final XMLInputFactory inputFactory;
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+    public StaxEntryRewriter() {
+        inputFactory = XMLInputFactory.newInstance();
+        // Names are kept with their prefixes as written, like the DOM parser which is not namespace aware
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+    }
+
+    @Override
+    public Rewrite prepare(String entryName, String location, ImportExtractor.Source source, ImportMatcher matcher,
+                           boolean dryRun, List<String> imports) throws Exception {
+        StaxImportExtractor.Collector collector = imports != null ? new StaxImportExtractor.Collector() : null;
+        int replaced;
+        try (InputStream in = source.open()) {
+            replaced = rewrite(in, null, matcher, dryRun ? location : null, collector);
+        }
+        if (collector != null) {
+            imports.addAll(new StaxImportExtractor().imports(entryName, source, collector));
+        }
+
+        return new Rewrite() {
+            @Override
+            public int replacements() {
+                return replaced;
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws Exception {
+                try (InputStream in = source.open()) {
+                    rewrite(in, out, matcher, entryName, null);
+                }
+            }
+
+            @Override
+            public boolean streaming() {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Reads entry and writes it with replaced imports
+     * @param in entry content
+     * @param out target stream, null only counts replacements
+     * @param matcher old imports with their new imports
+     * @param name entry name when writing, location of planned replacements when counting in dry run, otherwise null
+     * @param collector collects imports of the entry, null when they are not needed
+     * @return number of replaced imports
+     */
+    private int rewrite(InputStream in, OutputStream out, ImportMatcher matcher, String name,
+                        StaxImportExtractor.Collector collector) throws XMLStreamException, IOException {
+        // Prolog and the bytes after the root element are copied when they can be found in the raw bytes
+        byte[] prolog = null;
+        TailInputStream tail = null;
+        boolean crlf = false;
+        if (out != null) {
+            BufferedInputStream buffered = new BufferedInputStream(in);
+            byte[] head = readHead(buffered);
+            prolog = prolog(head);
+            crlf = usesCrlf(head);
+            in = buffered;
+            if (prolog != null) {
+                tail = new TailInputStream(buffered);
+                in = tail;
+            }
+        }
+
+        XMLEventReader reader = inputFactory.createXMLEventReader(in);
+        Output output = null;
+        String encoding = "UTF-8";
+        // Events of text:text-input element while it is read, written once its whole text is known
+        List<XMLEvent> pending = null;
+        StringBuilder text = null;
+        int depth = 0;
+        int replaced = 0;
+        // Element depth in the document, root element name once it started
+        int level = 0;
+        String root = null;
+        // Events after the root element, written only when its raw bytes can not be copied
+        List<XMLEvent> epilog = new ArrayList<>();
+
+        try {
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (collector != null) {
+                    collect(collector, event);
+                }
+                if (event.isStartElement()) {
+                    if (root == null) {
+                        root = qualifiedName(event.asStartElement().getName().getPrefix(),
+                                event.asStartElement().getName().getLocalPart());
+                    }
+                    level++;
+                } else if (event.isEndElement()) {
+                    level--;
+                }
+
+                if (pending != null) {
+                    pending.add(event);
+                    if (event.isStartElement()) {
+                        depth++;
+                    } else if (event.isCharacters()) {
+                        text.append(event.asCharacters().getData());
+                    } else if (event.isEndElement() && --depth == 0) {
+                        String oldText = text.toString();
+                        String newText = matcher.replace(oldText);
+                        if (newText != oldText) {
+                            replaced++;
+                            if (out != null) {
+                                System.out.println("Replacing import in " + name);
+                            } else if (name != null) {
+                                System.out.println("Would replace \"" + oldText + "\" with \"" + newText + "\" in " + name);
+                            }
+                        }
+                        if (output != null) {
+                            output.writeElement(pending, newText != oldText ? newText : null);
+                        }
+                        pending = null;
+                    }
+                    continue;
+                }
+
+                if (event.isStartElement() && isTextInput(event.asStartElement())) {
+                    pending = new ArrayList<>();
+                    pending.add(event);
+                    text = new StringBuilder();
+                    depth = 1;
+                } else if (out != null) {
+                    if (event.isStartDocument()) {
+                        StartDocument start = (StartDocument) event;
+                        encoding = start.encodingSet() ? start.getCharacterEncodingScheme() : "UTF-8";
+                        output = new Output(outputFactory.createXMLStreamWriter(out, encoding), crlf);
+                        if (prolog != null) {
+                            out.write(prolog);
+                        }
+                    }
+                    if (prolog != null && root == null) {
+                        // Already copied with the prolog
+                        continue;
+                    }
+                    if (root != null && level == 0 && !event.isEndElement()) {
+                        if (!event.isEndDocument()) {
+                            epilog.add(event);
+                            continue;
+                        }
+                        byte[] raw = tail == null ? null : readEpilog(tail.bytes(), root, encoding);
+                        if (raw != null) {
+                            output.writer.flush();
+                            out.write(raw);
+                            continue;
+                        }
+                        for (XMLEvent epilogEvent : epilog) {
+                            output.write(epilogEvent, null);
+                        }
+                    }
+                    output.write(event, reader.peek());
+                }
+            }
+        } finally {
+            reader.close();
+            if (output != null) {
+                // Underlying stream is left open
+                output.writer.close();
+            }
+        }
+        return replaced;
+    }
+
+    /**
+     * Passes event to the import collector
+     */
+    private static void collect(StaxImportExtractor.Collector collector, XMLEvent event) {
+        switch (event.getEventType()) {
+            case XMLStreamConstants.START_ELEMENT -> collector.startElement();
+            case XMLStreamConstants.END_ELEMENT -> collector.endElement();
+            case XMLStreamConstants.CHARACTERS, XMLStreamConstants.SPACE, XMLStreamConstants.CDATA -> {
+                Characters characters = event.asCharacters();
+                char[] data = characters.getData().toCharArray();
+                collector.text(data, 0, data.length, characters.isCData());
+            }
+            case XMLStreamConstants.COMMENT, XMLStreamConstants.PROCESSING_INSTRUCTION -> collector.markup();
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * @return first RAW_LIMIT bytes of the entry, which are not consumed
+     */
+    private static byte[] readHead(BufferedInputStream in) throws IOException {
+        in.mark(RAW_LIMIT);
+        byte[] head = in.readNBytes(RAW_LIMIT);
+        in.reset();
+        return head;
+    }
+
+    /**
+     * @return true when line breaks of the bytes are CRLF only
+     */
+    private static boolean usesCrlf(byte[] head) {
+        boolean found = false;
+        for (int i = 0; i < head.length; i++) {
+            if (head[i] == '\n') {
+                if (i == 0 || head[i - 1] != '\r') {
+                    return false;
+                }
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param head first bytes of the entry
+     * @return bytes before the root element, null when they contain a document type, are longer than RAW_LIMIT
+     * or are not in an ASCII compatible encoding
+     */
+    private static byte[] prolog(byte[] head) {
+        int start = startsWith(head, 0, BOM) ? BOM.length : 0;
+        int end = skipMisc(head, start, head.length);
+        if (end < 0 || end + 1 >= head.length || head[end] != '<' || head[end + 1] == '!') {
+            return null;
+        }
+        return Arrays.copyOf(head, end);
+    }
+
+    /**
+     * @param tail last bytes of the entry
+     * @param root name of the root element
+     * @return bytes after the end tag of the root element, null when they can not be found
+     */
+    private static byte[] readEpilog(byte[] tail, String root, String encoding) {
+        byte[] endTag = ("</" + root).getBytes(Charset.forName(encoding));
+        int start = -1;
+        for (int i = tail.length - endTag.length; i >= 0 && start < 0; i--) {
+            if (startsWith(tail, i, endTag)) {
+                start = i;
+            }
+        }
+        if (start < 0) {
+            return null;
+        }
+        int end = start + endTag.length;
+        while (end < tail.length && tail[end] != '>') {
+            end++;
+        }
+        if (end == tail.length || skipMisc(tail, end + 1, tail.length) != tail.length) {
+            return null;
+        }
+        return Arrays.copyOfRange(tail, end + 1, tail.length);
+    }
+
+    /**
+     * Skips whitespace, comments and processing instructions, which includes the XML declaration
+     * @return index of the first other byte, -1 when a comment or processing instruction is not closed before end
+     */
+    private static int skipMisc(byte[] data, int from, int end) {
+        int i = from;
+        while (i < end) {
+            byte b = data[i];
+            if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                i++;
+            } else if (startsWith(data, i, "<?".getBytes())) {
+                i = indexOf(data, i + 2, end, "?>".getBytes());
+                if (i < 0) {
+                    return -1;
+                }
+                i += 2;
+            } else if (startsWith(data, i, "<!--".getBytes())) {
+                i = indexOf(data, i + 4, end, "-->".getBytes());
+                if (i < 0) {
+                    return -1;
+                }
+                i += 3;
+            } else {
+                return i;
+            }
+        }
+        return i;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, byte[] prefix) {
+        if (offset + prefix.length > data.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] data, int from, int end, byte[] target) {
+        for (int i = from; i + target.length <= end; i++) {
+            if (startsWith(data, i, target)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isTextInput(StartElement element) {
+        return qualifiedName(element.getName().getPrefix(), element.getName().getLocalPart()).equals(TEXT_INPUT);
+    }
+
+    private static String qualifiedName(String prefix, String localPart) {
+        return prefix == null || prefix.isEmpty() ? localPart : prefix + ":" + localPart;
+    }
+
+    /**
+     * Keeps the last bytes read, so the bytes after the root element can be copied once the entry is parsed
+     */
+    private static class TailInputStream extends FilterInputStream {
+        private final byte[] tail = new byte[2 * RAW_LIMIT];
+        private int length;
+
+        TailInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                keep(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                keep(b, off, n);
+            }
+            return n;
+        }
+
+        private void keep(byte[] b, int off, int n) {
+            if (n >= RAW_LIMIT) {
+                System.arraycopy(b, off + n - RAW_LIMIT, tail, 0, RAW_LIMIT);
+                length = RAW_LIMIT;
+                return;
+            }
+            if (length + n > tail.length) {
+                // Drops older bytes, at least RAW_LIMIT are kept
+                int kept = RAW_LIMIT - n;
+                System.arraycopy(tail, length - kept, tail, 0, kept);
+                length = kept;
+            }
+            System.arraycopy(b, off, tail, length, n);
+            length += n;
+        }
+
+        /**
+         * @return at least the last RAW_LIMIT bytes read, or all of them when fewer were read
+         */
+        byte[] bytes() {
+            return Arrays.copyOf(tail, length);
+        }
+    }
+
+    /**
+     * Writes read events back, element whose end tag ends where its start tag ended is written as empty element tag
+     */
+    private static class Output {
+        private final XMLStreamWriter writer;
+        // Line breaks of the entry are CRLF, which the parser reported as LF
+        private final boolean crlf;
+        private boolean skipEnd;
+
+        Output(XMLStreamWriter writer, boolean crlf) {
+            this.writer = writer;
+            this.crlf = crlf;
+        }
+
+        /**
+         * @return text with the line breaks of the entry
+         */
+        private String lineBreaks(String text) {
+            return crlf ? text.replace("\n", "\r\n") : text;
+        }
+
+        /**
+         * Writes buffered element
+         * @param events element events from start to end
+         * @param newText replaced text content, null writes events as they were read
+         */
+        void writeElement(List<XMLEvent> events, String newText) throws XMLStreamException {
+            if (newText != null) {
+                writeStart(events.get(0).asStartElement(), false);
+                writer.writeCharacters(lineBreaks(newText));
+                writer.writeEndElement();
+                return;
+            }
+            for (int i = 0; i < events.size(); i++) {
+                write(events.get(i), i + 1 < events.size() ? events.get(i + 1) : null);
+            }
+        }
+
+        /**
+         * @param event event to write
+         * @param next event after it, null at the end
+         */
+        void write(XMLEvent event, XMLEvent next) throws XMLStreamException {
+            switch (event.getEventType()) {
+                case XMLStreamConstants.START_DOCUMENT -> {
+                    StartDocument start = (StartDocument) event;
+                    writer.writeStartDocument(start.encodingSet() ? start.getCharacterEncodingScheme() : "UTF-8",
+                            start.getVersion() == null ? "1.0" : start.getVersion());
+                }
+                case XMLStreamConstants.START_ELEMENT -> {
+                    // Both events of an empty element tag end at the same character
+                    boolean empty = next != null && next.isEndElement()
+                            && next.getLocation().getCharacterOffset() == event.getLocation().getCharacterOffset();
+                    writeStart(event.asStartElement(), empty);
+                    skipEnd = empty;
+                }
+                case XMLStreamConstants.END_ELEMENT -> {
+                    if (skipEnd) {
+                        skipEnd = false;
+                    } else {
+                        writer.writeEndElement();
+                    }
+                }
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.SPACE ->
+                        writer.writeCharacters(lineBreaks(event.asCharacters().getData()));
+                case XMLStreamConstants.CDATA -> writer.writeCData(lineBreaks(event.asCharacters().getData()));
+                case XMLStreamConstants.COMMENT -> writer.writeComment(lineBreaks(((Comment) event).getText()));
+                case XMLStreamConstants.PROCESSING_INSTRUCTION -> {
+                    ProcessingInstruction instruction = (ProcessingInstruction) event;
+                    writer.writeProcessingInstruction(instruction.getTarget(), instruction.getData());
+                }
+                case XMLStreamConstants.DTD -> writer.writeDTD(((DTD) event).getDocumentTypeDeclaration());
+                case XMLStreamConstants.END_DOCUMENT -> writer.writeEndDocument();
+                default -> {
+                }
+            }
+        }
+
+        private void writeStart(StartElement element, boolean empty) throws XMLStreamException {
+            String name = qualifiedName(element.getName().getPrefix(), element.getName().getLocalPart());
+            if (empty) {
+                writer.writeEmptyElement(name);
+            } else {
+                writer.writeStartElement(name);
+            }
+            for (Iterator<Attribute> attributes = element.getAttributes(); attributes.hasNext(); ) {
+                Attribute attribute = attributes.next();
+                writer.writeAttribute(qualifiedName(attribute.getName().getPrefix(), attribute.getName().getLocalPart()),
+                        attribute.getValue());
+            }
+        }
+    }
+}
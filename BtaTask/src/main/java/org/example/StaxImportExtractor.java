@@ -0,0 +1,227 @@
+package org.example;
+
+import org.example.errors.XMLFileReadingException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Finds imports in a single forward pass with StAX, without building a DOM.
+ * Gives the same result as DomImportExtractor: an element matches when its first
+ * text node contains "[import", and its whole text content is reported.
+ * Text is only kept for elements which matched, so memory does not grow with entry size.
+ */
+public class StaxImportExtractor implements ImportExtractor {
+    private static final String MARKER = "[import";
+
+    private final XMLInputFactory inputFactory;
+
+    public StaxImportExtractor() {
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+    }
+
+    @Override
+    public List<String> extractImports(String entryName, Source source) throws XMLFileReadingException {
+        try {
+            Collector collector = new Collector();
+            try (InputStream in = source.open()) {
+                scan(in, collector);
+            }
+            return imports(entryName, source, collector);
+        } catch (Exception e) {
+            throw new XMLFileReadingException("Error reading " + entryName + ": ", e);
+        }
+    }
+
+    /**
+     * Imports found by a collector which has seen the whole entry
+     * @param entryName name reported with each import
+     * @param source entry content, read again only when an element matched after its child elements
+     * @param collector collector which got all events of the entry
+     * @return imports in document order
+     */
+    List<String> imports(String entryName, Source source, Collector collector) throws Exception {
+        // Rare case: first text of an element came after its child elements,
+        // so its content was not kept during first pass
+        if (!collector.lateMatches.isEmpty()) {
+            try (InputStream in = source.open()) {
+                collectContent(in, collector.lateMatches, collector.matches);
+            }
+        }
+
+        List<String> imports = new ArrayList<>(collector.matches.size());
+        for (String content : collector.matches.values()) {
+            imports.add(content.trim() + " (from " + entryName + ")");
+        }
+        return imports;
+    }
+
+    /**
+     * State of an open element
+     */
+    private static class Frame {
+        final long number;
+        // Text of the first text node while it is being read
+        StringBuilder firstText;
+        boolean firstTextDone;
+        boolean hadChild;
+        boolean cdata;
+        // Text content, only kept once element is known to match
+        StringBuilder content;
+
+        Frame(long number) {
+            this.number = number;
+        }
+    }
+
+    /**
+     * Finds matching elements from parser events, so a pass which already reads the entry can collect imports too
+     */
+    static class Collector {
+        // Element number -> text content, sorted in document order like XPath result
+        private final SortedMap<Long, String> matches = new TreeMap<>();
+        private final Set<Long> lateMatches = new HashSet<>();
+        private final Deque<Frame> stack = new ArrayDeque<>();
+        private long elementNumber;
+
+        void startElement() {
+            Frame parent = stack.peek();
+            if (parent != null) {
+                endFirstText(parent);
+                parent.hadChild = true;
+            }
+            stack.push(new Frame(elementNumber++));
+        }
+
+        void endElement() {
+            Frame frame = stack.pop();
+            endFirstText(frame);
+            if (frame.content != null) {
+                matches.put(frame.number, frame.content.toString());
+            } else if (frame.firstTextDone && frame.hadChild && frame.firstText != null) {
+                lateMatches.add(frame.number);
+            }
+        }
+
+        /**
+         * @param cdata true when text is a CDATA section
+         */
+        void text(char[] chars, int start, int length, boolean cdata) {
+            Frame top = stack.peek();
+            if (top == null) {
+                return;
+            }
+            // CDATA section is a separate text node, not merged by normalize()
+            if (top.firstText != null && !top.firstTextDone && top.cdata != cdata) {
+                endFirstText(top);
+            }
+            for (Frame frame : stack) {
+                if (frame.content != null) {
+                    frame.content.append(chars, start, length);
+                }
+            }
+            if (!top.firstTextDone) {
+                if (top.firstText == null) {
+                    top.firstText = new StringBuilder();
+                    top.cdata = cdata;
+                }
+                top.firstText.append(chars, start, length);
+            }
+        }
+
+        /**
+         * Comment or processing instruction, which ends the current text node
+         */
+        void markup() {
+            Frame top = stack.peek();
+            if (top != null) {
+                endFirstText(top);
+            }
+        }
+    }
+
+    private void scan(InputStream in, Collector collector) throws Exception {
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+
+        try {
+            while (reader.hasNext()) {
+                int event = reader.next();
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT -> collector.startElement();
+                    case XMLStreamConstants.END_ELEMENT -> collector.endElement();
+                    case XMLStreamConstants.CHARACTERS, XMLStreamConstants.SPACE, XMLStreamConstants.CDATA ->
+                            collector.text(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength(),
+                                    event == XMLStreamConstants.CDATA);
+                    case XMLStreamConstants.COMMENT, XMLStreamConstants.PROCESSING_INSTRUCTION -> collector.markup();
+                    default -> {
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Closes first text node of the element and decides if element matches.
+     * Elements which do not match drop their text, elements which match keep collecting it.
+     * Element marked as matched after having child elements keeps firstText as a flag for second pass.
+     */
+    private static void endFirstText(Frame frame) {
+        if (frame.firstText == null || frame.firstTextDone) {
+            return;
+        }
+        frame.firstTextDone = true;
+        if (frame.firstText.indexOf(MARKER) < 0) {
+            frame.firstText = null;
+        } else if (!frame.hadChild) {
+            // Nothing came before the first text, so it is the content so far
+            frame.content = frame.firstText;
+        }
+    }
+
+    /**
+     * Second pass which collects text content of given elements
+     */
+    private void collectContent(InputStream in, Set<Long> numbers, SortedMap<Long, String> matches) throws Exception {
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+        Deque<Frame> stack = new ArrayDeque<>();
+        long elementNumber = 0;
+
+        try {
+            while (reader.hasNext()) {
+                int event = reader.next();
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT -> {
+                        Frame frame = new Frame(elementNumber++);
+                        if (numbers.contains(frame.number)) {
+                            frame.content = new StringBuilder();
+                        }
+                        stack.push(frame);
+                    }
+                    case XMLStreamConstants.END_ELEMENT -> {
+                        Frame frame = stack.pop();
+                        if (frame.content != null) {
+                            matches.put(frame.number, frame.content.toString());
+                        }
+                    }
+                    case XMLStreamConstants.CHARACTERS, XMLStreamConstants.SPACE, XMLStreamConstants.CDATA -> {
+                        for (Frame frame : stack) {
+                            if (frame.content != null) {
+                                frame.content.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                            }
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package org.example.errors;
+
+public class ImportMappingException extends Exception{
+    public ImportMappingException(String message) {
+        super(message);
+    }
+
+    public ImportMappingException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
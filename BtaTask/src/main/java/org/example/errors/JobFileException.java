@@ -0,0 +1,11 @@
+package org.example.errors;
+
+public class JobFileException extends Exception{
+    public JobFileException(String message) {
+        super(message);
+    }
+
+    public JobFileException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -6,6 +6,6 @@ public class ODTFileReadingException extends Exception {
     }
 
     public ODTFileReadingException(String message, Throwable cause){
-        super(message);
+        super(message, cause);
     }
 }
@@ -0,0 +1,11 @@
+package org.example.errors;
+
+public class ShardMergeException extends Exception{
+    public ShardMergeException(String message) {
+        super(message);
+    }
+
+    public ShardMergeException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -6,6 +6,6 @@ public class XMLFileReadingException extends Exception{
     }
 
     public XMLFileReadingException(String message,Throwable cause){
-        super(message);
+        super(message, cause);
     }
 }
@@ -0,0 +1,79 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ByteEntryRewriterTest {
+
+    @AfterEach
+    void tearDown() {
+        Metrics.get().reset();
+    }
+
+    // Test that plain text imports are replaced in bytes and everything else is kept
+    @Test
+    void testReplacesInBytes() throws Exception {
+        String content = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<root xmlns:text=\"urn:text\">\n"
+                + "  <text:p><text:text-input text:description=\"a > b\">[import a&amp;b.odt]</text:text-input></text:p>\n"
+                + "  <text:p>[import a&amp;b.odt]</text:p>\n"
+                + "  <text:text-input/>\n"
+                + "</root>";
+        ImportMatcher matcher = new ImportMatcher(Map.of("[import a&b.odt]", "[import c<d.odt]"));
+
+        String result = rewrite(content, matcher, 1);
+
+        assertEquals(content.replaceFirst("\\[import a&amp;b\\.odt]", "[import c&lt;d.odt]"), result,
+                "Only text of text:text-input should change.");
+        assertEquals(1, Metrics.get().count(Metrics.BYTE_ENTRIES));
+        assertEquals(0, Metrics.get().count(Metrics.FALLBACK_ENTRIES));
+    }
+
+    // Test that import split by markup is passed to the parsed rewriter
+    @Test
+    void testFallsBackWhenMarkupIsInside() throws Exception {
+        String content = "<root><text:text-input>[import <text:span>aaa</text:span>]</text:text-input></root>";
+
+        String result = rewrite(content, ImportMatcher.of("[import aaa]", "[import bbb]"), 1);
+
+        assertTrue(result.contains("[import bbb]"));
+        assertEquals(1, Metrics.get().count(Metrics.FALLBACK_ENTRIES));
+    }
+
+    // Test that comments and unknown entities are never changed in bytes
+    @Test
+    void testFallsBackForCommentsAndEntities() throws Exception {
+        ImportMatcher matcher = ImportMatcher.of("[import aaa]", "[import bbb]");
+        rewrite("<root><!-- <text:text-input>[import aaa]</text:text-input> --></root>", matcher, 0);
+        rewrite("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><root><text:text-input>[import aaa]</text:text-input></root>", matcher, 1);
+
+        assertEquals(2, Metrics.get().count(Metrics.FALLBACK_ENTRIES));
+        assertEquals(0, Metrics.get().count(Metrics.BYTE_ENTRIES));
+    }
+
+    private String rewrite(String content, ImportMatcher matcher, int expectedReplacements) throws Exception {
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        EntryRewriter.Rewrite rewrite = new ByteEntryRewriter(new DomEntryRewriter()).prepare("content.xml",
+                "content.xml of test.odt", () -> new ByteArrayInputStream(data), matcher, false, null);
+        assertEquals(expectedReplacements, rewrite.replacements());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rewrite.writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    // Test unescaping of predefined entities and character references
+    @Test
+    void testUnescape() {
+        assertEquals("[import a&b<c>.odt]", ByteEntryRewriter.unescape("&#91;import a&amp;b&lt;c&#x3E;.odt]"));
+        assertNull(ByteEntryRewriter.unescape("[import &custom;]"));
+        assertEquals("a&amp;b&lt;c&gt;", ByteEntryRewriter.escape("a&b<c>"));
+    }
+}
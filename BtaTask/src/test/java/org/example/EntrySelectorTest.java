@@ -0,0 +1,89 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class EntrySelectorTest {
+    private static final String MANIFEST = "<manifest:manifest xmlns:manifest=\"urn:oasis:names:tc:opendocument:xmlns:manifest:1.0\">"
+            + "<manifest:file-entry manifest:full-path=\"/\" manifest:media-type=\"application/vnd.oasis.opendocument.text\"/>"
+            + "<manifest:file-entry manifest:full-path=\"Object 1/\" manifest:media-type=\"application/vnd.oasis.opendocument.chart\"/>"
+            + "<manifest:file-entry manifest:full-path=\"Pictures/a.png\" manifest:media-type=\"image/png\"/>"
+            + "</manifest:manifest>";
+
+    private static final List<String> ENTRIES = List.of("mimetype", "content.xml", "styles.xml", "meta.xml",
+            "settings.xml", "META-INF/manifest.xml", "Object 1/content.xml", "Object 1/styles.xml",
+            "Object 2/content.xml", "Pictures/a.png");
+
+    // Test that default selection opens only main content and styles
+    @Test
+    void testDefaultSelectsContentAndStyles() throws IOException {
+        Set<String> selected = EntrySelector.DEFAULT.select(ENTRIES, this::manifest);
+
+        assertEquals(Set.of("content.xml", "styles.xml"), selected);
+    }
+
+    // Test globs, * stays in one folder and exclude wins over include
+    @Test
+    void testIncludeAndExcludeGlobs() throws IOException {
+        assertEquals(Set.of("content.xml", "styles.xml", "meta.xml", "settings.xml"),
+                EntrySelector.create("*.xml", "", false).select(ENTRIES, null));
+
+        Set<String> selected = EntrySelector.create("**.xml", "META-INF/**, settings.xml", false).select(ENTRIES, null);
+        assertEquals(Set.of("content.xml", "styles.xml", "meta.xml", "Object 1/content.xml",
+                "Object 1/styles.xml", "Object 2/content.xml"), selected);
+    }
+
+    // Test that only embedded documents listed in manifest are opened
+    @Test
+    void testEmbeddedObjectsFromManifest() throws IOException {
+        Set<String> selected = EntrySelector.create("", "", true).select(ENTRIES, this::manifest);
+
+        assertEquals(Set.of("content.xml", "styles.xml", "Object 1/content.xml", "Object 1/styles.xml"), selected);
+    }
+
+    // Test that reader skips xml files which are not selected
+    @Test
+    void testReaderSkipsUnselectedEntries() throws Exception {
+        File odtFile = File.createTempFile("selector", ".odt");
+        try {
+            try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(odtFile))) {
+                addEntry(zos, "META-INF/manifest.xml", MANIFEST);
+                addEntry(zos, "content.xml", "<text:p xmlns:text=\"urn:oasis:names:tc:opendocument:xmlns:text:1.0\">[import a.odt]</text:p>");
+                addEntry(zos, "meta.xml", "<meta>[import b.odt]</meta>");
+                addEntry(zos, "Object 1/content.xml", "<text:p xmlns:text=\"urn:oasis:names:tc:opendocument:xmlns:text:1.0\">[import c.odt]</text:p>");
+                // Broken but never opened
+                addEntry(zos, "settings.xml", "<settings>");
+            }
+
+            List<String> imports = ODTReader.extractImportsFromAllXML(odtFile, new DomImportExtractor(), EntrySelector.DEFAULT);
+            assertEquals(1, imports.size());
+            assertTrue(imports.get(0).contains("[import a.odt]"));
+
+            imports = ODTReader.extractImportsFromAllXML(odtFile, new DomImportExtractor(), EntrySelector.create("", "", true));
+            assertEquals(2, imports.size());
+            assertTrue(imports.get(1).contains("[import c.odt]"));
+        } finally {
+            odtFile.delete();
+        }
+    }
+
+    private ByteArrayInputStream manifest() {
+        return new ByteArrayInputStream(MANIFEST.getBytes());
+    }
+
+    private void addEntry(ZipOutputStream zos, String name, String content) throws IOException {
+        zos.putNextEntry(new ZipEntry(name));
+        zos.write(content.getBytes());
+        zos.closeEntry();
+    }
+}
@@ -0,0 +1,59 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileCatalogTest {
+
+    // Test that names are found ignoring case and duplicates are reported
+    @Test
+    void testFindAndDuplicates() {
+        File footer = new File("templates/footer.odt");
+        File block = new File("blocks/Block_1.odt");
+        File otherBlock = new File("old/block_1.odt");
+        FileCatalog catalog = new FileCatalog(List.of(block, otherBlock, footer));
+
+        assertEquals(List.of(footer), catalog.find("FOOTER.odt"));
+        assertEquals(List.of(block, otherBlock), catalog.find("block_1.odt"));
+        assertTrue(catalog.find("missing.odt").isEmpty());
+        assertEquals(List.of("block_1.odt"), List.copyOf(catalog.duplicates().keySet()));
+        assertEquals(3, catalog.files().size());
+    }
+
+    // Test that editor does not pick one of several files with the same name
+    @Test
+    void testEditorSkipsDuplicateNames() throws Exception {
+        File folder = Files.createTempDirectory("odt_catalog").toFile();
+        File subFolder = new File(folder, "old");
+        subFolder.mkdir();
+        File first = TestOdt.create(new File(folder, "footer.odt"), TestOdt.textInput("[import aaa]"));
+        File second = TestOdt.create(new File(subFolder, "footer.odt"), TestOdt.textInput("[import aaa]"));
+        try {
+            ODTReader reader = new ODTReader();
+            reader.scanODTFiles(folder.getAbsolutePath());
+            FileCatalog catalog = reader.getCatalog();
+            assertEquals(2, catalog.find("footer.odt").size());
+
+            byte[] before = Files.readAllBytes(first.toPath());
+            ODTEditor.modifyOdtImports(new File("footer.odt"), ImportMatcher.of("[import aaa]", "[import bbb]"),
+                    RewriteOptions.DEFAULT, catalog);
+            assertArrayEquals(before, Files.readAllBytes(first.toPath()), "Ambiguous file should not be modified.");
+            assertArrayEquals(before, Files.readAllBytes(second.toPath()), "Ambiguous file should not be modified.");
+
+            second.delete();
+            List<RewriteResult> results = ODTEditor.modifyAllOdtImports(new FileCatalog(List.of(first)),
+                    ImportMatcher.of("[import aaa]", "[import bbb]"), RewriteOptions.DEFAULT, null);
+            assertEquals(1, results.get(0).replacements());
+        } finally {
+            first.delete();
+            second.delete();
+            subFolder.delete();
+            folder.delete();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class ImportMarkerFilterTest {
+
+    // Test that entries without marker are skipped and counted
+    @Test
+    void testSkipsEntryWithoutMarker() throws Exception {
+        ImportMarkerFilter filter = new ImportMarkerFilter(new DomImportExtractor());
+
+        String noImport = "<root><p>no import here</p></root>";
+        String withImport = "<root><p>[import block_1.odt]</p></root>";
+        assertTrue(extract(filter, noImport).isEmpty());
+        assertEquals(List.of("[import block_1.odt] (from content.xml)"), extract(filter, withImport));
+
+        assertEquals(1, filter.getEntriesSkipped());
+        assertEquals(1, filter.getEntriesParsed());
+        assertEquals(noImport.length(), filter.getBytesSkipped());
+        assertEquals(withImport.length(), filter.getBytesParsed());
+    }
+
+    // Test that result is the same as without filter when marker is hidden behind references or encoding
+    @Test
+    void testSameResultAsFullParse() throws Exception {
+        ImportMarkerFilter filter = new ImportMarkerFilter(new DomImportExtractor());
+        DomImportExtractor dom = new DomImportExtractor();
+
+        for (String xml : List.of("<root><p>&#91;import a.odt]</p></root>",
+                "<!DOCTYPE root [<!ENTITY m \"[import\">]><root><p>&m; b.odt]</p></root>",
+                "<root><p><![CDATA[[import c.odt]]]></p></root>",
+                "<root><p>[impor</p><p>t d.odt]</p></root>")) {
+            assertEquals(dom.extractImports("content.xml", () -> stream(xml)), extract(filter, xml), xml);
+        }
+        assertEquals(1, filter.getEntriesSkipped());
+    }
+
+    // Test marker search at edges of content
+    @Test
+    void testIndexOfMarker() {
+        assertEquals(0, ImportMarkerFilter.indexOfMarker("[import".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(5, ImportMarkerFilter.indexOfMarker("[imp [import x]".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(-1, ImportMarkerFilter.indexOfMarker("[impor".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(-1, ImportMarkerFilter.indexOfMarker(new byte[0]));
+        assertTrue(ImportMarkerFilter.mayContainImport("<a>[import b]</a>".getBytes(StandardCharsets.UTF_16)));
+    }
+
+    // Test that a marker split between two read chunks is found while streaming
+    @Test
+    void testFindsMarkerAcrossChunks() throws Exception {
+        ImportMarkerFilter filter = new ImportMarkerFilter(new DomImportExtractor());
+        // First chunk is 64 KB plus the kept marker length - 1 bytes
+        String padding = "x".repeat(64 * 1024 + "[import".length() - 1 - "<root><p>".length() - 3);
+        String xml = "<root><p>" + padding + "[import e.odt]</p></root>";
+
+        assertEquals(dom(xml), extract(filter, xml));
+        assertEquals(xml.length(), filter.getBytesParsed());
+        assertFalse(ImportMarkerFilter.mayContainImport(("<root>" + padding.repeat(3) + "</root>").getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private List<String> dom(String xml) throws Exception {
+        return new DomImportExtractor().extractImports("content.xml", () -> stream(xml));
+    }
+
+    private List<String> extract(ImportExtractor extractor, String xml) throws Exception {
+        return extractor.extractImports("content.xml", () -> stream(xml));
+    }
+
+    private ByteArrayInputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+}
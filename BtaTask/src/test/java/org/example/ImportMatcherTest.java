@@ -0,0 +1,82 @@
+package org.example;
+
+import org.example.errors.ImportMappingException;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImportMatcherTest {
+
+    @Test
+    void testReplacesAllMappingsInOnePass() {
+        Map<String, String> mappings = new LinkedHashMap<>();
+        mappings.put("[import a.odt]", "[import b.odt]");
+        mappings.put("[import b.odt]", "[import c.odt]");
+        mappings.put("[import header.odt]", "[import top.odt]");
+        ImportMatcher matcher = new ImportMatcher(mappings);
+
+        // Renames do not chain, a becomes b and b becomes c
+        assertEquals("x [import b.odt] [import c.odt] [import top.odt]",
+                matcher.replace("x [import a.odt] [import b.odt] [import header.odt]"));
+    }
+
+    @Test
+    void testNoMatchReturnsSameText() {
+        String text = "[import other.odt]";
+        assertSame(text, ImportMatcher.of("[import a.odt]", "[import b.odt]").replace(text));
+    }
+
+    @Test
+    void testLongestMatchWins() {
+        Map<String, String> mappings = new LinkedHashMap<>();
+        mappings.put("[import a", "X");
+        mappings.put("[import a.odt]", "Y");
+        mappings.put("odt", "Z");
+        assertEquals("Y XZ", new ImportMatcher(mappings).replace("[import a.odt] [import aodt"));
+    }
+
+    @Test
+    void testSingleImportSameAsStringReplace() {
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            String pattern = randomText(random, 1 + random.nextInt(3));
+            String text = randomText(random, random.nextInt(20));
+            assertEquals(text.replace(pattern, "#"), ImportMatcher.of(pattern, "#").replace(text),
+                    "pattern " + pattern + " in " + text);
+        }
+    }
+
+    @Test
+    void testLoadMappings() throws Exception {
+        File mappingFile = Files.createTempFile("mapping", ".txt").toFile();
+        try {
+            Files.write(mappingFile.toPath(), List.of("# renames", "", "[import a.odt] => [import b.odt]",
+                    "[import c.odt]=>[import d.odt]"));
+            assertEquals(Map.of("[import a.odt]", "[import b.odt]", "[import c.odt]", "[import d.odt]"),
+                    ImportMatcher.loadMappings(mappingFile));
+
+            Files.write(mappingFile.toPath(), List.of("[import a.odt] [import b.odt]"));
+            ImportMappingException thrown = assertThrows(ImportMappingException.class,
+                    () -> ImportMatcher.loadMappings(mappingFile));
+            assertTrue(thrown.getMessage().startsWith("Invalid mapping on line 1"));
+        } finally {
+            mappingFile.delete();
+        }
+    }
+
+    // Random text from small alphabet, so patterns overlap often
+    private String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append("ab[".charAt(random.nextInt(3)));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,165 @@
+package org.example;
+
+import org.example.errors.JobFileException;
+import org.json.JSONArray;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JobRunnerTest {
+    private final List<File> created = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        // Files before their folders
+        for (int i = created.size() - 1; i >= 0; i--) {
+            created.get(i).delete();
+        }
+    }
+
+    // Test that scan and rewrite jobs of two folders run over one pass and scans see imports before rewrites
+    @Test
+    void testRunsJobsOfSeveralFolders() throws Exception {
+        File base = Files.createTempDirectory("odt_jobs").toFile();
+        created.add(base);
+        File templates = folder(base, "templates");
+        File blocks = folder(base, "blocks");
+        File a = TestOdt.create(new File(templates, "a.odt"), TestOdt.textInput("[import aaa]"));
+        File b = TestOdt.create(new File(templates, "b.odt"), TestOdt.textInput("[import aaa]"));
+        File c = TestOdt.create(new File(templates, "c.odt"), TestOdt.textInput("[import ccc]"));
+        File d = TestOdt.create(new File(blocks, "d.odt"), TestOdt.textInput("[import ccc]"));
+        created.addAll(List.of(a, b, c, d));
+        Map<File, List<String>> before = new ODTReader().scanODTFiles(templates.getAbsolutePath());
+
+        File jobFile = write(new File(base, "jobs.json"), """
+                {"jobs": [
+                  {"name": "report", "type": "scan", "folderPath": "templates", "reportOutput": "report.json"},
+                  {"name": "one", "type": "rewrite", "folderPath": "templates", "odtFile": "b.odt",
+                   "oldImport": "[import aaa]", "newImport": "[import bbb]"},
+                  {"name": "all", "type": "rewrite", "folderPath": "templates", "mappings": {"[import ccc]": "[import ddd]"}},
+                  {"name": "blocks", "type": "rewrite", "folderPath": "blocks", "mappings": {"[import ccc]": "[import eee]"}}
+                ]}""");
+        created.add(new File(base, "report.json"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            new JobRunner(RewriteOptions.DEFAULT, executor).run(JobFile.load(jobFile));
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(ODTReader.generateJsonOutput(before).toString(),
+                new JSONArray(Files.readString(new File(base, "report.json").toPath())).toString());
+        assertEquals(List.of("[import aaa] (from content.xml)"), imports(a));
+        assertEquals(List.of("[import bbb] (from content.xml)"), imports(b));
+        assertEquals(List.of("[import ddd] (from content.xml)"), imports(c));
+        assertEquals(List.of("[import eee] (from content.xml)"), imports(d));
+    }
+
+    // Test that jobs of a nested folder run over the walk of the outer folder and rewrite each document once
+    @Test
+    void testRunsNestedFolderJobsInOneWalk() throws Exception {
+        File base = Files.createTempDirectory("odt_jobs").toFile();
+        created.add(base);
+        File templates = folder(base, "templates");
+        File sub = folder(templates, "sub");
+        File a = TestOdt.create(new File(templates, "a.odt"), TestOdt.textInput("[import ccc]"));
+        File b = TestOdt.create(new File(sub, "b.odt"), "<root><text:text-input>[import aaa]</text:text-input>"
+                + "<text:text-input>[import ccc]</text:text-input></root>");
+        created.addAll(List.of(a, b));
+        Map<File, List<String>> before = new ODTReader().scanODTFiles(sub.getAbsolutePath());
+
+        File jobFile = write(new File(base, "jobs.json"), """
+                {"jobs": [
+                  {"name": "outer", "type": "rewrite", "folderPath": "templates", "oldImport": "[import aaa]", "newImport": "[import bbb]"},
+                  {"name": "inner", "type": "rewrite", "folderPath": "templates/sub", "oldImport": "[import ccc]", "newImport": "[import ddd]"},
+                  {"name": "report", "type": "scan", "folderPath": "templates/sub", "reportOutput": "report.json"}
+                ]}""");
+        created.add(new File(base, "report.json"));
+
+        Metrics.get().reset();
+        try {
+            new JobRunner(RewriteOptions.DEFAULT, null).run(JobFile.load(jobFile));
+            assertEquals(1, Metrics.get().count(Metrics.FILES_REWRITTEN), "Only b.odt should be rewritten, once.");
+        } finally {
+            Metrics.get().reset();
+        }
+
+        assertEquals(ODTReader.generateJsonOutput(before).toString(),
+                new JSONArray(Files.readString(new File(base, "report.json").toPath())).toString());
+        assertEquals(List.of("[import ccc] (from content.xml)"), imports(a));
+        assertEquals(List.of("[import bbb] (from content.xml)", "[import ddd] (from content.xml)"), imports(b));
+    }
+
+    // Test that rewrite jobs replacing the same import differently in the same files are rejected
+    @Test
+    void testRejectsConflictingJobs() throws Exception {
+        File base = Files.createTempDirectory("odt_jobs").toFile();
+        created.add(base);
+        File jobFile = write(new File(base, "jobs.json"), """
+                {"jobs": [
+                  {"type": "rewrite", "folderPath": "templates", "odtFile": "a.odt", "oldImport": "[import aaa]", "newImport": "[import bbb]"},
+                  {"type": "rewrite", "folderPath": "templates", "odtFile": "b.odt", "oldImport": "[import aaa]", "newImport": "[import ccc]"}
+                ]}""");
+        assertEquals(2, JobFile.load(jobFile).size(), "Jobs of different files do not conflict.");
+
+        write(jobFile, """
+                {"jobs": [
+                  {"type": "rewrite", "folderPath": "templates", "oldImport": "[import aaa]", "newImport": "[import bbb]"},
+                  {"type": "rewrite", "folderPath": "templates", "odtFile": "b.odt", "oldImport": "[import aaa]", "newImport": "[import ccc]"}
+                ]}""");
+        assertThrows(JobFileException.class, () -> JobFile.load(jobFile));
+
+        // Second job would have to see the result of the first one
+        write(jobFile, """
+                {"jobs": [
+                  {"type": "rewrite", "folderPath": "templates", "oldImport": "[import aaa]", "newImport": "[import bbb]"},
+                  {"type": "rewrite", "folderPath": "templates", "odtFile": "b.odt", "oldImport": "[import bbb]", "newImport": "[import ccc]"}
+                ]}""");
+        assertThrows(JobFileException.class, () -> JobFile.load(jobFile));
+
+        // Same chain with the second job in a sub folder
+        write(jobFile, """
+                {"jobs": [
+                  {"type": "rewrite", "folderPath": "templates", "oldImport": "[import aaa]", "newImport": "[import bbb]"},
+                  {"type": "rewrite", "folderPath": "templates/sub", "oldImport": "[import bbb]", "newImport": "[import ccc]"}
+                ]}""");
+        assertThrows(JobFileException.class, () -> JobFile.load(jobFile));
+
+        write(jobFile, "{\"jobs\": [{\"type\": \"rewrite\", \"folderPath\": \"templates\"}]}");
+        assertThrows(JobFileException.class, () -> JobFile.load(jobFile));
+
+        write(jobFile, "{\"jobs\": [{\"type\": \"scan\", \"folderPath\": \"templates\", \"reportFormat\": \"xml\"}]}");
+        assertThrows(JobFileException.class, () -> JobFile.load(jobFile));
+    }
+
+    private List<String> imports(File odtFile) {
+        return new ODTReader().scanODTFiles(odtFile.getParent()).get(odtFile);
+    }
+
+    private File folder(File parent, String name) {
+        File folder = new File(parent, name);
+        folder.mkdir();
+        created.add(folder);
+        return folder;
+    }
+
+    private File write(File file, String content) throws IOException {
+        Files.writeString(file.toPath(), content, StandardCharsets.UTF_8);
+        if (!created.contains(file)) {
+            created.add(file);
+        }
+        return file;
+    }
+}
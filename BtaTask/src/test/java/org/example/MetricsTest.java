@@ -0,0 +1,45 @@
+package org.example;
+
+import org.example.errors.XMLFileReadingException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+
+    @Test
+    void testCountersHistogramsAndSlowestDocuments() throws Exception {
+        Metrics metrics = new Metrics();
+        for (int i = 1; i <= 12; i++) {
+            metrics.recordDocument(new File("doc_" + i + ".odt"), i * 1_000_000L);
+        }
+        metrics.record(Metrics.ENTRY_PARSE_SECONDS, 2_000_000L);
+        metrics.error(new XMLFileReadingException("Error reading content.xml: ", new Exception("broken")));
+
+        try (InputStream in = metrics.measureInflate(new ByteArrayInputStream(new byte[100]))) {
+            in.readAllBytes();
+        }
+
+        assertEquals(12, metrics.count(Metrics.FILES_SCANNED));
+        assertEquals(100, metrics.count(Metrics.BYTES_INFLATED));
+        assertEquals(1, metrics.errorCount("XMLFileReadingException"));
+
+        JSONObject json = metrics.toJson();
+        assertEquals(10, json.getJSONArray("slowestDocuments").length(), "Only slowest documents should be kept.");
+        assertEquals("doc_12.odt", json.getJSONArray("slowestDocuments").getJSONObject(0).getString("file"));
+        assertEquals(12, json.getJSONObject("histograms").getJSONObject(Metrics.DOCUMENT_SECONDS).getInt("count"));
+
+        String prometheus = metrics.toPrometheus();
+        assertTrue(prometheus.contains("odt_files_scanned_total 12\n"));
+        assertTrue(prometheus.contains(Metrics.DOCUMENT_SECONDS + "_bucket{le=\"0.005\"} 5\n"));
+        assertTrue(prometheus.contains(Metrics.DOCUMENT_SECONDS + "_bucket{le=\"+Inf\"} 12\n"));
+        assertTrue(prometheus.contains("odt_errors_total{type=\"XMLFileReadingException\"} 1\n"));
+
+        assertTrue(metrics.summary().contains("Scanned 12 files"));
+    }
+}
@@ -9,9 +9,20 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ODTEditorTest {
     private File tempXMLFile;
@@ -64,4 +75,174 @@ public class ODTEditorTest {
         // Ensure the empty file is still empty
         assertEquals(0, emptyXMLFile.length(), "Empty XML file should remain empty.");
     }
+
+    @Test
+    void testModifyOdtImportsCopiesUnchangedEntries() throws Exception {
+        File folder = Files.createTempDirectory("odt_edit").toFile();
+        File odtFile = new File(folder, "footer.odt");
+        byte[] image = new byte[4096];
+        new Random(1).nextBytes(image);
+
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(odtFile))) {
+            ZipEntry mimetype = new ZipEntry("mimetype");
+            byte[] mimetypeBytes = "application/vnd.oasis.opendocument.text".getBytes();
+            mimetype.setMethod(ZipEntry.STORED);
+            mimetype.setSize(mimetypeBytes.length);
+            CRC32 crc = new CRC32();
+            crc.update(mimetypeBytes);
+            mimetype.setCrc(crc.getValue());
+            zos.putNextEntry(mimetype);
+            zos.write(mimetypeBytes);
+            zos.closeEntry();
+
+            zos.putNextEntry(new ZipEntry("content.xml"));
+            zos.write("<root><text:text-input>[import aaa]</text:text-input></root>".getBytes());
+            zos.closeEntry();
+
+            zos.putNextEntry(new ZipEntry("Pictures/image.png"));
+            zos.write(image);
+            zos.closeEntry();
+        }
+
+        ZipEntry imageBefore;
+        try (ZipFile zipFile = new ZipFile(odtFile)) {
+            imageBefore = zipFile.getEntry("Pictures/image.png");
+        }
+
+        ODTEditor.modifyOdtImports(new File("footer.odt"), "[import aaa]", "[import bbb]", folder.getAbsolutePath());
+
+        try (ZipFile zipFile = new ZipFile(odtFile)) {
+            assertEquals("mimetype", zipFile.entries().nextElement().getName(), "mimetype should be the first entry.");
+
+            String content = new String(zipFile.getInputStream(zipFile.getEntry("content.xml")).readAllBytes());
+            assertTrue(content.contains("[import bbb]"), "The import should be replaced.");
+
+            ZipEntry imageAfter = zipFile.getEntry("Pictures/image.png");
+            assertEquals(imageBefore.getCrc(), imageAfter.getCrc());
+            assertEquals(imageBefore.getCompressedSize(), imageAfter.getCompressedSize());
+            assertArrayEquals(image, zipFile.getInputStream(imageAfter).readAllBytes());
+        } finally {
+            odtFile.delete();
+            folder.delete();
+        }
+    }
+
+    @Test
+    void testModifyAllOdtImportsOnlyTouchesMatchingFiles() throws Exception {
+        File folder = Files.createTempDirectory("odt_bulk").toFile();
+        File subFolder = new File(folder, "blocks");
+        subFolder.mkdir();
+        File first = TestOdt.create(new File(folder, "a.odt"), TestOdt.textInput("[import aaa]"));
+        File second = TestOdt.create(new File(subFolder, "b.odt"), TestOdt.textInput("[import aaa]"));
+        File untouched = TestOdt.create(new File(folder, "c.odt"), TestOdt.textInput("[import ccc]"));
+        untouched.setLastModified(1000000000000L);
+
+        ExecutorService executor = ScanExecutors.create("forkjoin", 2);
+        try {
+            List<RewriteResult> results = ODTEditor.modifyAllOdtImports(folder.getAbsolutePath(), "[import aaa]", "[import bbb]", executor);
+
+            assertEquals(3, results.size());
+            assertEquals(List.of(first, second, untouched), results.stream().map(RewriteResult::file).toList());
+            assertEquals(List.of(1, 1, 0), results.stream().map(RewriteResult::replacements).toList());
+            assertEquals(1000000000000L, untouched.lastModified(), "File without import should not be rewritten.");
+            try (ZipFile zipFile = new ZipFile(second)) {
+                String content = new String(zipFile.getInputStream(zipFile.getEntry("content.xml")).readAllBytes());
+                assertTrue(content.contains("[import bbb]"), "The import should be replaced.");
+            }
+        } finally {
+            executor.shutdown();
+            first.delete();
+            second.delete();
+            untouched.delete();
+            subFolder.delete();
+            folder.delete();
+        }
+    }
+
+    @Test
+    void testFusedEditReportsOldImportsAndRewrites() throws Exception {
+        File folder = Files.createTempDirectory("odt_fused").toFile();
+        File first = TestOdt.create(new File(folder, "a.odt"), TestOdt.textInput("[import aaa]"));
+        File untouched = TestOdt.create(new File(folder, "b.odt"), TestOdt.textInput("[import ccc]"));
+        untouched.setLastModified(1000000000000L);
+
+        ExecutorService executor = ScanExecutors.create("forkjoin", 2);
+        try {
+            ODTReader reader = new ODTReader(executor);
+            reader.setFusedEdit(ImportMatcher.of("[import aaa]", "[import bbb]"), RewriteOptions.DEFAULT);
+            Map<File, List<String>> report = reader.scanODTFiles(folder.getAbsolutePath());
+
+            assertEquals(List.of("[import aaa] (from content.xml)"), report.get(first), "Report should show imports before the edit.");
+            assertEquals(List.of(1, 0), reader.getFusedResults().stream().map(RewriteResult::replacements).toList());
+            assertEquals(1000000000000L, untouched.lastModified(), "File without import should not be rewritten.");
+            assertEquals(List.of("[import bbb] (from content.xml)"), ODTReader.extractImportsFromAllXML(first));
+        } finally {
+            executor.shutdown();
+            first.delete();
+            untouched.delete();
+            folder.delete();
+        }
+    }
+
+    @Test
+    void testDryRunLeavesFileUntouched() throws Exception {
+        File folder = Files.createTempDirectory("odt_dry_run").toFile();
+        File odtFile = TestOdt.create(new File(folder, "a.odt"),
+                "<root><text:text-input>[import aaa]</text:text-input><text:text-input>[import aaa]</text:text-input></root>");
+        odtFile.setLastModified(1000000000000L);
+        byte[] before = Files.readAllBytes(odtFile.toPath());
+
+        try {
+            List<RewriteResult> results = ODTEditor.modifyAllOdtImports(folder.getAbsolutePath(),
+                    ImportMatcher.of("[import aaa]", "[import bbb]"),
+                    new RewriteOptions(EntrySelector.DEFAULT, true, CompressionLevels.DEFAULT, ODTFileWalker.DEFAULT,
+                            new DomEntryRewriter()), null);
+
+            assertEquals(2, results.get(0).replacements(), "Dry run should report planned replacements.");
+            assertArrayEquals(before, Files.readAllBytes(odtFile.toPath()), "Dry run should not change the file.");
+            assertEquals(1000000000000L, odtFile.lastModified(), "Dry run should not touch the file.");
+        } finally {
+            odtFile.delete();
+            folder.delete();
+        }
+    }
+
+    @Test
+    void testRewriteStoresMimetypeAndUsesEntryLevels() throws Exception {
+        File odtFile = File.createTempFile("levels", ".odt");
+        try {
+            try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(odtFile))) {
+                // Compressed mimetype, not allowed by ODF
+                zos.putNextEntry(new ZipEntry("mimetype"));
+                zos.write("application/vnd.oasis.opendocument.text".getBytes());
+                zos.closeEntry();
+                zos.putNextEntry(new ZipEntry("content.xml"));
+                zos.write("<root><text:text-input>[import aaa]</text:text-input></root>".getBytes());
+                zos.closeEntry();
+                zos.putNextEntry(new ZipEntry("styles.xml"));
+                zos.write("<root><text:text-input>[import aaa]</text:text-input></root>".getBytes());
+                zos.closeEntry();
+            }
+
+            RewriteOptions options = new RewriteOptions(EntrySelector.DEFAULT, false, CompressionLevels.parse("xml:0"),
+                    ODTFileWalker.DEFAULT, new DomEntryRewriter());
+            assertEquals(2, ODTEditor.rewriteOdt(odtFile, ImportMatcher.of("[import aaa]", "[import bbb]"), options));
+
+            try (ZipFile zipFile = new ZipFile(odtFile)) {
+                ZipEntry mimetype = zipFile.entries().nextElement();
+                assertEquals("mimetype", mimetype.getName());
+                assertEquals(ZipEntry.STORED, mimetype.getMethod(), "mimetype should be stored.");
+                assertEquals("application/vnd.oasis.opendocument.text",
+                        new String(zipFile.getInputStream(mimetype).readAllBytes()));
+
+                for (String name : List.of("content.xml", "styles.xml")) {
+                    ZipEntry entry = zipFile.getEntry(name);
+                    assertEquals(ZipEntry.STORED, entry.getMethod(), "Level 0 should store " + name);
+                    assertTrue(new String(zipFile.getInputStream(entry).readAllBytes()).contains("[import bbb]"));
+                }
+            }
+        } finally {
+            odtFile.delete();
+        }
+    }
 }
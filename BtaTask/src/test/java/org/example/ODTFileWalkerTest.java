@@ -0,0 +1,138 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class ODTFileWalkerTest {
+
+    // Test that files come sorted by path, extensions ignore case
+    @Test
+    void testWalkOrderAndExtensions() throws Exception {
+        Path root = Files.createTempDirectory("odt_walk");
+        try {
+            Path a = touch(root.resolve("dir/x.odt"));
+            Path b = touch(root.resolve("dir.odt"));
+            Path c = touch(root.resolve("dir/sub/Y.ODT"));
+            Path d = touch(root.resolve("a.ott"));
+            Path e = touch(root.resolve("b.fodt"));
+            touch(root.resolve("notes.txt"));
+
+            List<File> expected = new ArrayList<>(List.of(a.toFile(), b.toFile(), c.toFile()));
+            expected.sort(Comparator.comparing(File::getPath));
+            assertEquals(expected, ODTFileWalker.DEFAULT.list(root));
+
+            ODTFileWalker templates = ODTFileWalker.create("", "", 0, true, "odt,ott,fodt");
+            assertEquals(5, templates.list(root).size());
+            assertTrue(templates.list(root).containsAll(List.of(d.toFile(), e.toFile())));
+        } finally {
+            delete(root);
+        }
+    }
+
+    // Test include and exclude globs and maximum depth
+    @Test
+    void testGlobsAndDepth() throws Exception {
+        Path root = Files.createTempDirectory("odt_walk");
+        try {
+            Path top = touch(root.resolve("top.odt"));
+            Path block = touch(root.resolve("blocks/block_1.odt"));
+            touch(root.resolve("backup/old.odt"));
+            Path deep = touch(root.resolve("blocks/deep/block_2.odt"));
+
+            ODTFileWalker excludeBackup = ODTFileWalker.create("", "backup", 0, true, "odt");
+            assertEquals(List.of(block.toFile(), deep.toFile(), top.toFile()), excludeBackup.list(root));
+            assertFalse(excludeBackup.accepts(root, root.resolve("backup/new.odt")));
+
+            ODTFileWalker onlyBlocks = ODTFileWalker.create("blocks/*.odt", "", 0, true, "odt");
+            assertEquals(List.of(block.toFile()), onlyBlocks.list(root));
+
+            ODTFileWalker shallow = ODTFileWalker.create("", "", 2, true, "odt");
+            assertFalse(shallow.list(root).contains(deep.toFile()));
+            assertTrue(shallow.list(root).contains(top.toFile()));
+        } finally {
+            delete(root);
+        }
+    }
+
+    // Test that a single folder is checked and walked with the rules of the whole tree
+    @Test
+    void testDescendsIntoAndWalkFolder() throws Exception {
+        Path root = Files.createTempDirectory("odt_walk");
+        try {
+            Path block = touch(root.resolve("blocks/block_1.odt"));
+            touch(root.resolve("blocks/backup/old.odt"));
+            touch(root.resolve("blocks/deep/deeper/block_2.odt"));
+
+            ODTFileWalker walker = ODTFileWalker.create("", "blocks/backup", 3, true, "odt");
+            assertTrue(walker.descendsInto(root, root));
+            assertTrue(walker.descendsInto(root, root.resolve("blocks/deep")));
+            assertFalse(walker.descendsInto(root, root.resolve("blocks/backup")));
+            assertFalse(walker.descendsInto(root, root.resolve("blocks/backup/sub")));
+            assertFalse(walker.descendsInto(root, root.resolve("blocks/deep/deeper")));
+
+            List<File> files = new ArrayList<>();
+            walker.walk(root, root.resolve("blocks"), files::add);
+            assertEquals(List.of(block.toFile()), files);
+        } finally {
+            delete(root);
+        }
+    }
+
+    // Test that a link back to a parent folder does not loop
+    @Test
+    void testSymbolicLinkLoop() throws Exception {
+        Path root = Files.createTempDirectory("odt_walk");
+        try {
+            Path file = touch(root.resolve("sub/a.odt"));
+            try {
+                Files.createSymbolicLink(root.resolve("sub/loop"), root);
+            } catch (UnsupportedOperationException | IOException e) {
+                assumeTrue(false, "Symbolic links are not supported");
+            }
+
+            assertEquals(List.of(file.toFile()), ODTFileWalker.DEFAULT.list(root));
+        } finally {
+            Files.deleteIfExists(root.resolve("sub/loop"));
+            delete(root);
+        }
+    }
+
+    // Test that flat odt files are read as single XML document
+    @Test
+    void testReadFlatODT() throws Exception {
+        Path root = Files.createTempDirectory("odt_walk");
+        try {
+            Path file = root.resolve("footer.fodt");
+            Files.writeString(file, "<office:document xmlns:office=\"urn:oasis:names:tc:opendocument:xmlns:office:1.0\">"
+                    + "<p>[import block_1.odt]</p></office:document>");
+
+            assertEquals(List.of("[import block_1.odt] (from footer.fodt)"), ODTReader.extractImportsFromAllXML(file.toFile()));
+        } finally {
+            delete(root);
+        }
+    }
+
+    private Path touch(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, "");
+    }
+
+    private void delete(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -5,9 +5,15 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.example.errors.ODTFileReadingException;
 import org.example.errors.XMLFileReadingException;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -45,9 +51,9 @@ public class ODTReaderTest {
 
         // Test for invalid ODT file (malformed ZIP)
         @Test
-        void testExtractImportsFromAllXMLInvalidODTFile() {
+        void testExtractImportsFromAllXMLInvalidODTFile(@TempDir File tempDir) {
             // Create a malformed (invalid) ODT file (not a valid ZIP)
-            File invalidODTFile = new File("invalid.odt");
+            File invalidODTFile = new File(tempDir, "invalid.odt");
             try (BufferedWriter writer = new BufferedWriter(new FileWriter(invalidODTFile))) {
                 writer.write("This is not a valid ZIP file content.");
             } catch (IOException e) {
@@ -64,9 +70,9 @@ public class ODTReaderTest {
 
         // Test for exception during reading XML files
         @Test
-        void testExtractImportsFromAllXMLReadingXMLException() {
+        void testExtractImportsFromAllXMLReadingXMLException(@TempDir File tempDir) {
             // Create a malformed (invalid) ODT file that is not a valid ZIP file
-            File invalidODTFile = new File("invalid.odt");
+            File invalidODTFile = new File(tempDir, "invalid.odt");
 
             try (BufferedWriter writer = new BufferedWriter(new FileWriter(invalidODTFile))) {
                 writer.write("This is not a valid ZIP file content.");
@@ -223,6 +229,66 @@ public class ODTReaderTest {
         tempODTFile.delete();
     }
 
+    // Parallel scan keeps path order and skips unreadable files
+    @Test
+    void testScanODTFilesParallelSkipsBadFile() throws Exception {
+        File folder = Files.createTempDirectory("odt_scan").toFile();
+        File first = TestOdt.create(new File(folder, "a.odt"), "<root><p>[import block_1.odt]</p></root>");
+        File broken = new File(folder, "b.odt");
+        Files.writeString(broken.toPath(), "This is not a valid ZIP file content.");
+        File last = TestOdt.create(new File(folder, "c.odt"), "<root><p>[import block_2.odt]</p></root>");
+
+        ExecutorService executor = ScanExecutors.create("forkjoin", 4);
+        try {
+            Map<File, List<String>> result = new ODTReader(executor).scanODTFiles(folder.getAbsolutePath());
+
+            assertEquals(List.of(first, last), new ArrayList<>(result.keySet()));
+            assertEquals(List.of("[import block_1.odt] (from content.xml)"), result.get(first));
+            assertEquals(List.of("[import block_2.odt] (from content.xml)"), result.get(last));
+        } finally {
+            executor.shutdown();
+            first.delete();
+            broken.delete();
+            last.delete();
+            folder.delete();
+        }
+    }
+
+    // Unchanged files are taken from the index, deleted files are removed from it
+    @Test
+    void testScanODTFilesWithIndex() throws Exception {
+        File folder = Files.createTempDirectory("odt_index").toFile();
+        File indexFile = new File(folder, ImportIndex.DEFAULT_FILE_NAME);
+        File kept = TestOdt.create(new File(folder, "a.odt"), "<root><p>[import block_1.odt]</p></root>");
+        File deleted = TestOdt.create(new File(folder, "b.odt"), "<root><p>[import block_2.odt]</p></root>");
+        AtomicInteger parsed = new AtomicInteger();
+        ImportExtractor countingExtractor = (entryName, source) -> {
+            parsed.incrementAndGet();
+            return new DomImportExtractor().extractImports(entryName, source);
+        };
+
+        try {
+            ODTReader reader = new ODTReader();
+            reader.setExtractor(countingExtractor);
+            reader.setIndex(ImportIndex.load(indexFile));
+            Map<File, List<String>> first = reader.scanODTFiles(folder.getAbsolutePath());
+            assertEquals(2, parsed.get());
+
+            deleted.delete();
+            reader.setIndex(ImportIndex.load(indexFile));
+            Map<File, List<String>> second = reader.scanODTFiles(folder.getAbsolutePath());
+
+            assertEquals(2, parsed.get(), "Unchanged file should not be parsed again.");
+            assertEquals(first.get(kept), second.get(kept));
+            assertEquals(1, ImportIndex.load(indexFile).size());
+        } finally {
+            kept.delete();
+            deleted.delete();
+            indexFile.delete();
+            folder.delete();
+        }
+    }
+
     // Helper method to create a temporary XML file with content
     private File createTempXMLFile(String fileName, String content) throws IOException {
         File tempXMLFile = File.createTempFile("empty", ".xml");
@@ -0,0 +1,110 @@
+package org.example;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ODTServiceTest {
+
+    @Test
+    void testServiceAnswersQueriesAndRewrites() throws Exception {
+        File folder = Files.createTempDirectory("odt_service").toFile();
+        File footer = TestOdt.create(new File(folder, "footer.odt"), TestOdt.textInput("[import block_1.odt]"));
+        File block = TestOdt.create(new File(folder, "block_1.odt"), TestOdt.textInput("[import block_2.odt]"));
+        byte[] before = Files.readAllBytes(footer.toPath());
+        File outside = TestOdt.create(File.createTempFile("outside", ".odt"), TestOdt.textInput("[import block_1.odt]"));
+        byte[] outsideBefore = Files.readAllBytes(outside.toPath());
+
+        ODTService service = new ODTService(new ODTReader(), folder.getAbsolutePath(), 100, RewriteOptions.DEFAULT, null);
+        service.start(0);
+        try {
+            JSONArray scan = new JSONArray(request(service, "GET", "/scan"));
+            assertEquals(2, scan.length());
+
+            JSONObject importers = new JSONObject(request(service, "GET", "/importers?block=block_2.odt"));
+            assertEquals(1, importers.getJSONArray("direct").length());
+            assertEquals(2, importers.getJSONArray("affected").length(), "Footer imports block_1 which imports block_2.");
+
+            JSONObject imports = new JSONObject(request(service, "GET", "/imports?file=footer.odt"));
+            assertEquals("[import block_1.odt] (from content.xml)", imports.getJSONArray("imports").getString(0));
+
+            JSONArray dryRun = new JSONArray(request(service, "POST", "/rewrite?file=footer.odt&dryRun=true&old="
+                    + encode("[import block_1.odt]") + "&new=" + encode("[import block_3.odt]")));
+            assertEquals(1, dryRun.getJSONObject(0).getInt("replacements"));
+            assertArrayEquals(before, Files.readAllBytes(footer.toPath()), "Dry run should not change the file.");
+
+            JSONArray bulkDryRun = new JSONArray(request(service, "POST", "/rewrite?dryRun=true&old="
+                    + encode("[import block_1.odt]") + "&new=" + encode("[import block_3.odt]")));
+            assertEquals(1, bulkDryRun.length(), "Only files importing the old import should be opened.");
+            assertEquals(footer.getPath(), bulkDryRun.getJSONObject(0).getString("file"));
+
+            assertEquals(404, status(service, "GET", "/imports?file=missing.odt"));
+            String rename = "&old=" + encode("[import block_1.odt]") + "&new=" + encode("[import block_3.odt]");
+            assertEquals(404, status(service, "POST", "/rewrite?file=" + encode(outside.getAbsolutePath()) + rename),
+                    "Files outside the folder should not be rewritten.");
+            assertEquals(404, status(service, "POST", "/rewrite?file=" + encode("../" + outside.getName()) + rename));
+            assertArrayEquals(outsideBefore, Files.readAllBytes(outside.toPath()));
+            assertEquals(400, status(service, "GET", "/importers"));
+            assertEquals(405, status(service, "GET", "/rewrite"));
+
+            // HttpURLConnection drops Origin header, HttpClient sends it
+            HttpClient client = HttpClient.newHttpClient();
+            URI uri = URI.create("http://127.0.0.1:" + service.getPort() + "/rewrite?dryRun=true" + rename);
+            HttpRequest fromPage = HttpRequest.newBuilder(uri).header("Origin", "http://example.com")
+                    .header(ODTService.REQUEST_HEADER, "1").POST(HttpRequest.BodyPublishers.noBody()).build();
+            assertEquals(403, client.send(fromPage, HttpResponse.BodyHandlers.discarding()).statusCode(),
+                    "Requests from web pages should be refused.");
+            HttpRequest withoutHeader = HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.noBody()).build();
+            assertEquals(403, client.send(withoutHeader, HttpResponse.BodyHandlers.discarding()).statusCode());
+        } finally {
+            service.close();
+            footer.delete();
+            block.delete();
+            outside.delete();
+            folder.delete();
+        }
+    }
+
+    private String request(ODTService service, String method, String path) throws IOException {
+        HttpURLConnection connection = open(service, method, path);
+        assertEquals(200, connection.getResponseCode(), path);
+        try (InputStream in = connection.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private int status(ODTService service, String method, String path) throws IOException {
+        return open(service, method, path).getResponseCode();
+    }
+
+    private HttpURLConnection open(ODTService service, String method, String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + service.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setReadTimeout(20000);
+        if (method.equals("POST")) {
+            connection.setRequestProperty(ODTService.REQUEST_HEADER, "1");
+            connection.setDoOutput(true);
+            connection.getOutputStream().close();
+        }
+        return connection;
+    }
+
+    private String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,176 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class ODTWatcherTest {
+
+    @Test
+    void testWatcherPublishesChanges() throws Exception {
+        File folder = Files.createTempDirectory("odt_watch").toFile();
+        File existing = TestOdt.create(new File(folder, "a.odt"), "<root><p>[import block_1.odt]</p></root>");
+        BlockingQueue<SortedMap<File, List<String>>> published = new LinkedBlockingQueue<>();
+
+        ODTWatcher watcher = new ODTWatcher(new ODTReader(), folder.getAbsolutePath(), 100,
+                fileImportsMap -> published.add(new TreeMap<>(fileImportsMap)));
+        Thread thread = new Thread(() -> {
+            try {
+                watcher.run();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+
+        try {
+            // First full scan
+            SortedMap<File, List<String>> result = published.poll(10, TimeUnit.SECONDS);
+            assertNotNull(result);
+            assertEquals(List.of("[import block_1.odt] (from content.xml)"), result.get(existing.getAbsoluteFile()));
+
+            // New file in new sub folder and deleted file
+            File subFolder = new File(folder, "blocks");
+            subFolder.mkdir();
+            File created = TestOdt.create(new File(subFolder, "b.odt"), "<root><p>[import block_2.odt]</p></root>");
+            existing.delete();
+
+            File createdFile = created.getAbsoluteFile();
+            long deadline = System.currentTimeMillis() + 20000;
+            do {
+                result = published.poll(1, TimeUnit.SECONDS);
+            } while ((result == null || result.containsKey(existing.getAbsoluteFile()) || !result.containsKey(createdFile))
+                    && System.currentTimeMillis() < deadline);
+
+            assertNotNull(result);
+            assertEquals(List.of(createdFile), List.copyOf(result.keySet()));
+            assertEquals(List.of("[import block_2.odt] (from content.xml)"), result.get(createdFile));
+            created.delete();
+            subFolder.delete();
+        } finally {
+            thread.interrupt();
+            thread.join(5000);
+            existing.delete();
+            folder.delete();
+        }
+    }
+
+    // Test that a new folder is walked like the full scan, a link loop inside it does not stop the watcher
+    @Test
+    void testWatcherWalksNewFolderWithWalkerRules() throws Exception {
+        File folder = Files.createTempDirectory("odt_watch").toFile();
+        File outside = Files.createTempDirectory("odt_linked").toFile();
+        File staging = Files.createTempDirectory("odt_staging").toFile();
+        File linkedFile = TestOdt.create(new File(outside, "c.odt"), "<root><p>[import block_3.odt]</p></root>");
+        File blocks = new File(staging, "blocks");
+        blocks.mkdir();
+        TestOdt.create(new File(blocks, "b.odt"), "<root><p>[import block_2.odt]</p></root>");
+        try {
+            Files.createSymbolicLink(new File(blocks, "linked").toPath(), outside.toPath());
+            Files.createSymbolicLink(new File(blocks, "loop").toPath(), blocks.toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            assumeTrue(false, "Symbolic links are not supported");
+        }
+        BlockingQueue<SortedMap<File, List<String>>> published = new LinkedBlockingQueue<>();
+
+        ODTWatcher watcher = new ODTWatcher(new ODTReader(), folder.getAbsolutePath(), 100,
+                fileImportsMap -> published.add(new TreeMap<>(fileImportsMap)));
+        Thread thread = new Thread(() -> {
+            try {
+                watcher.run();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+
+        File moved = new File(folder, "blocks");
+        try {
+            assertNotNull(published.poll(10, TimeUnit.SECONDS), "First full scan should be published.");
+
+            // Folder appears with its content at once, links are followed as in the full scan
+            Files.move(blocks.toPath(), moved.toPath());
+            File linked = new File(moved, "linked/c.odt").getAbsoluteFile();
+            SortedMap<File, List<String>> result;
+            long deadline = System.currentTimeMillis() + 20000;
+            do {
+                result = published.poll(1, TimeUnit.SECONDS);
+            } while ((result == null || result.size() < 2) && System.currentTimeMillis() < deadline);
+
+            assertNotNull(result);
+            assertEquals(List.of(new File(moved, "b.odt").getAbsoluteFile(), linked), List.copyOf(result.keySet()));
+            assertTrue(thread.isAlive(), "Link loop should not stop the watcher.");
+        } finally {
+            thread.interrupt();
+            thread.join(5000);
+            Files.deleteIfExists(new File(moved, "linked").toPath());
+            Files.deleteIfExists(new File(moved, "loop").toPath());
+            new File(moved, "b.odt").delete();
+            moved.delete();
+            linkedFile.delete();
+            outside.delete();
+            staging.delete();
+            folder.delete();
+        }
+    }
+
+    // Test that saving the index inside the watched folder and unrelated files do not publish again
+    @Test
+    void testWatcherIgnoresIndexAndOtherFiles() throws Exception {
+        File folder = Files.createTempDirectory("odt_watch").toFile();
+        File indexFile = new File(folder, ImportIndex.DEFAULT_FILE_NAME);
+        File notes = new File(folder, "notes.txt");
+        File odtFile = TestOdt.create(new File(folder, "a.odt"), "<root><p>[import block_1.odt]</p></root>");
+        BlockingQueue<SortedMap<File, List<String>>> published = new LinkedBlockingQueue<>();
+
+        ODTReader reader = new ODTReader();
+        reader.setIndex(ImportIndex.load(indexFile));
+        ODTWatcher watcher = new ODTWatcher(reader, folder.getAbsolutePath(), 100,
+                fileImportsMap -> published.add(new TreeMap<>(fileImportsMap)));
+        Thread thread = new Thread(() -> {
+            try {
+                watcher.run();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+
+        try {
+            assertNotNull(published.poll(10, TimeUnit.SECONDS), "First full scan should be published.");
+            assertTrue(indexFile.exists());
+
+            Files.writeString(notes.toPath(), "not an odt file");
+            assertNull(published.poll(2, TimeUnit.SECONDS), "Unrelated file should not be published.");
+
+            // Changed odt file is published once, saving the index does not start another batch
+            TestOdt.create(odtFile, "<root><p>[import block_2.odt]</p></root>");
+            SortedMap<File, List<String>> result = published.poll(10, TimeUnit.SECONDS);
+            assertNotNull(result);
+            while (result.get(odtFile.getAbsoluteFile()).contains("[import block_1.odt] (from content.xml)")) {
+                // Events of the old content may arrive in an earlier batch
+                result = published.poll(10, TimeUnit.SECONDS);
+                assertNotNull(result);
+            }
+            assertNull(published.poll(2, TimeUnit.SECONDS), "Index save should not publish again.");
+        } finally {
+            thread.interrupt();
+            thread.join(5000);
+            odtFile.delete();
+            notes.delete();
+            indexFile.delete();
+            folder.delete();
+        }
+    }
+}
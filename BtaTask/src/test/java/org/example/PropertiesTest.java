@@ -61,6 +61,33 @@ public class PropertiesTest {
             // Clean up the temporary file after the test
             tempFile.delete();
         }
+
+    // Test that a number property with a typo names the key instead of failing with NumberFormatException
+    @Test
+    void testGetIntRejectsInvalidNumber() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("scanThreads", "4x");
+        properties.setProperty("servePort", " 8080 ");
+
+        PropertiesLoadException thrown = assertThrows(PropertiesLoadException.class,
+                () -> PropertiesLoader.getInt(properties, "scanThreads", 0));
+        assertEquals("Property scanThreads must be a whole number, was: 4x", thrown.getMessage());
+        assertEquals(8080, PropertiesLoader.getInt(properties, "servePort", 8765));
+        assertEquals(1000, PropertiesLoader.getLong(properties, "watchDebounceMillis", 1000));
+    }
+
+    // Test that an unknown setting names the key instead of failing with IllegalArgumentException
+    @Test
+    void testGetSettingRejectsUnknownValue() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("extractor", "sax");
+
+        PropertiesLoadException thrown = assertThrows(PropertiesLoadException.class,
+                () -> PropertiesLoader.getSetting(properties, "extractor", "dom", ImportExtractor::create));
+        assertEquals("Property extractor is invalid: Unknown import extractor: sax", thrown.getMessage());
+        properties.remove("extractor");
+        assertInstanceOf(DomImportExtractor.class, PropertiesLoader.getSetting(properties, "extractor", "dom", ImportExtractor::create));
     }
+}
 
 
@@ -0,0 +1,62 @@
+package org.example;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ReportWriterTest {
+
+    // Writes given results with json report writer
+    private String writeJsonArray(Map<File, List<String>> fileImportsMap) throws IOException {
+        StringWriter out = new StringWriter();
+        try (ReportWriter writer = new JsonArrayReportWriter(out)) {
+            for (Map.Entry<File, List<String>> entry : fileImportsMap.entrySet()) {
+                writer.fileScanned(entry.getKey(), entry.getValue());
+            }
+        }
+        return out.toString();
+    }
+
+    @Test
+    void testJsonArrayMatchesGeneratedOutput() throws IOException {
+        Map<File, List<String>> fileImportsMap = new LinkedHashMap<>();
+        assertEquals(ODTReader.generateJsonOutput(fileImportsMap).toString(2) + "\n", writeJsonArray(fileImportsMap));
+
+        fileImportsMap.put(new File("a.odt"), List.of("[import block_1.odt] (from content.xml)"));
+        assertEquals(ODTReader.generateJsonOutput(fileImportsMap).toString(2) + "\n", writeJsonArray(fileImportsMap));
+
+        fileImportsMap.put(new File("b.odt"), List.of());
+        fileImportsMap.put(new File("c.odt"), List.of("[import x.odt] (from content.xml)", "[import y.odt] (from styles.xml)"));
+        assertEquals(ODTReader.generateJsonOutput(fileImportsMap).toString(2) + "\n", writeJsonArray(fileImportsMap));
+    }
+
+    @Test
+    void testGzipNdjson() throws IOException {
+        File output = Files.createTempFile("report", ".ndjson.gz").toFile();
+        try {
+            try (ReportWriter writer = ReportWriter.create("ndjson", output.getAbsolutePath(), true)) {
+                writer.fileScanned(new File("a.odt"), List.of("[import block_1.odt] (from content.xml)"));
+                writer.fileScanned(new File("b.odt"), List.of());
+            }
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new FileInputStream(output)), StandardCharsets.UTF_8))) {
+                List<String> lines = reader.lines().toList();
+                assertEquals(2, lines.size());
+                assertEquals("a.odt", new JSONObject(lines.get(0)).getString("file"));
+                assertEquals(0, new JSONObject(lines.get(1)).getJSONArray("imports").length());
+            }
+        } finally {
+            output.delete();
+        }
+    }
+}
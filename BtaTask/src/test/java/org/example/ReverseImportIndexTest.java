@@ -0,0 +1,46 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ReverseImportIndexTest {
+
+    @Test
+    void testDirectAndTransitiveImporters() {
+        File footer = new File("templates/footer.odt");
+        File letter = new File("templates/letter.odt");
+        File invoice = new File("templates/invoice.odt");
+        File block = new File("blocks/block_1.odt");
+
+        Map<File, List<String>> fileImportsMap = new LinkedHashMap<>();
+        fileImportsMap.put(block, List.of());
+        fileImportsMap.put(footer, List.of("[import blocks/Block_1.odt] (from content.xml)"));
+        fileImportsMap.put(letter, List.of("[import footer.odt] (from content.xml)", "[import logo.odt] (from styles.xml)"));
+        fileImportsMap.put(invoice, List.of("[import letter.odt] [import block_1.odt] (from content.xml)"));
+
+        ReverseImportIndex index = ReverseImportIndex.build(fileImportsMap);
+
+        assertEquals(List.of(footer, invoice), index.directImporters("block_1.odt"));
+        assertEquals(List.of(footer, letter, invoice), index.affectedBy("block_1.odt"));
+        assertEquals(List.of(letter), index.directImporters("LOGO.odt"));
+        assertEquals(List.of(), index.affectedBy("unknown.odt"));
+    }
+
+    @Test
+    void testImportCycleTerminates() {
+        File first = new File("a.odt");
+        File second = new File("b.odt");
+
+        Map<File, List<String>> fileImportsMap = new LinkedHashMap<>();
+        fileImportsMap.put(first, List.of("[import b.odt] (from content.xml)"));
+        fileImportsMap.put(second, List.of("[import a.odt] (from content.xml)"));
+
+        assertEquals(List.of(first, second), ReverseImportIndex.build(fileImportsMap).affectedBy("a.odt"));
+    }
+}
@@ -0,0 +1,155 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RewriteJournalTest {
+    private static final String JOB = "[import aaa] => [import bbb]";
+
+    // Test that restarted run skips finished files and rewrites the interrupted one
+    @Test
+    void testResumesInterruptedRun() throws Exception {
+        File folder = Files.createTempDirectory("odt_journal").toFile();
+        File journalFile = new File(folder, RewriteJournal.DEFAULT_FILE_NAME);
+        List<File> files = new ArrayList<>();
+        try {
+            for (String name : List.of("a.odt", "b.odt", "c.odt")) {
+                files.add(TestOdt.create(new File(folder, name), TestOdt.textInput("[import aaa]")));
+            }
+            ImportMatcher matcher = ImportMatcher.of("[import aaa]", "[import bbb]");
+
+            // First run finishes a.odt and dies while b.odt is staged
+            RewriteJournal journal = RewriteJournal.open(journalFile, JOB);
+            journal.started(files.get(0));
+            journal.finished(files.get(0), ODTEditor.rewriteOdt(files.get(0), matcher, RewriteOptions.DEFAULT));
+            journal.started(files.get(1));
+            File staging = ODTEditor.stagingFile(files.get(1));
+            Files.writeString(staging.toPath(), "half written");
+            journal.finish(false);
+            assertTrue(journalFile.exists());
+
+            journal = RewriteJournal.open(journalFile, JOB);
+            assertFalse(staging.exists(), "Staging file of interrupted rewrite should be removed.");
+            assertTrue(journal.isFinished(files.get(0)));
+            assertFalse(journal.isFinished(files.get(1)));
+
+            List<RewriteResult> results = ODTEditor.modifyAllOdtImports(new FileCatalog(files), matcher,
+                    RewriteOptions.DEFAULT, null, journal);
+
+            assertEquals(List.of(files.get(1), files.get(2)), results.stream().map(RewriteResult::file).toList());
+            assertTrue(results.stream().allMatch(result -> result.replacements() == 1));
+            assertFalse(journalFile.exists(), "Journal should be deleted after complete run.");
+        } finally {
+            files.forEach(File::delete);
+            journalFile.delete();
+            folder.delete();
+        }
+    }
+
+    // Test that a file moved in place before its finished line was written is not rewritten again
+    @Test
+    void testStagedFileInPlaceIsFinished() throws Exception {
+        File folder = Files.createTempDirectory("odt_journal").toFile();
+        File journalFile = new File(folder, RewriteJournal.DEFAULT_FILE_NAME);
+        File moved = TestOdt.create(new File(folder, "a.odt"), TestOdt.textInput("[import aaa]"));
+        File kept = TestOdt.create(new File(folder, "b.odt"), TestOdt.textInput("[import aaa]"));
+        try {
+            // Swap would undo itself when applied twice
+            ImportMatcher matcher = new ImportMatcher(Map.of("[import aaa]", "[import bbb]", "[import bbb]", "[import aaa]"));
+
+            // First run dies after a.odt was moved in place and while b.odt is staged
+            RewriteJournal journal = RewriteJournal.open(journalFile, JOB);
+            journal.started(moved);
+            File staging = ODTEditor.stagingFile(moved);
+            TestOdt.create(staging, TestOdt.textInput("[import bbb]"));
+            journal.staged(moved, staging);
+            Files.move(staging.toPath(), moved.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            journal.started(kept);
+            File keptStaging = TestOdt.create(ODTEditor.stagingFile(kept), TestOdt.textInput("[import bbb]"));
+            journal.staged(kept, keptStaging);
+            journal.finish(false);
+
+            journal = RewriteJournal.open(journalFile, JOB);
+            assertTrue(journal.isFinished(moved));
+            assertFalse(journal.isFinished(kept));
+            assertFalse(keptStaging.exists(), "Staging file of a file which was not moved should be removed.");
+
+            ODTEditor.modifyAllOdtImports(new FileCatalog(List.of(moved, kept)), matcher, RewriteOptions.DEFAULT, null, journal);
+            assertEquals(List.of("[import bbb] (from content.xml)"), new ODTReader().scanODTFiles(folder.getAbsolutePath()).get(moved));
+            assertEquals(List.of("[import bbb] (from content.xml)"), new ODTReader().scanODTFiles(folder.getAbsolutePath()).get(kept));
+        } finally {
+            moved.delete();
+            kept.delete();
+            journalFile.delete();
+            folder.delete();
+        }
+    }
+
+    // Test that fused bulk edit records rewritten files and only reads files finished before
+    @Test
+    void testFusedEditResumesInterruptedRun() throws Exception {
+        File folder = Files.createTempDirectory("odt_journal").toFile();
+        File journalFile = new File(folder, RewriteJournal.DEFAULT_FILE_NAME);
+        File finished = TestOdt.create(new File(folder, "a.odt"), TestOdt.textInput("[import bbb]"));
+        File pending = TestOdt.create(new File(folder, "b.odt"), TestOdt.textInput("[import aaa]"));
+        try {
+            // Swap would undo itself when applied twice
+            ImportMatcher matcher = new ImportMatcher(Map.of("[import aaa]", "[import bbb]", "[import bbb]", "[import aaa]"));
+            RewriteJournal journal = RewriteJournal.open(journalFile, JOB);
+            journal.finished(finished, 1);
+            journal.finish(false);
+
+            journal = RewriteJournal.open(journalFile, JOB);
+            ODTReader reader = new ODTReader();
+            reader.setFusedEdit(matcher, RewriteOptions.DEFAULT, journal);
+            Map<File, List<String>> imports = reader.scanODTFiles(folder.getPath());
+
+            assertEquals(List.of(pending), reader.getFusedResults().stream().map(RewriteResult::file).toList());
+            assertEquals(1, imports.get(finished).size());
+            assertTrue(imports.get(finished).get(0).contains("bbb"), "Finished file should only be read.");
+            assertTrue(journal.isFinished(pending));
+            journal.finish(true);
+        } finally {
+            finished.delete();
+            pending.delete();
+            journalFile.delete();
+            folder.delete();
+        }
+    }
+
+    // Test that entries of another job and changed files are not skipped
+    @Test
+    void testIgnoresOtherJobAndChangedFiles() throws Exception {
+        File folder = Files.createTempDirectory("odt_journal").toFile();
+        File journalFile = new File(folder, RewriteJournal.DEFAULT_FILE_NAME);
+        File odtFile = TestOdt.create(new File(folder, "a.odt"), TestOdt.textInput("[import aaa]"));
+        try {
+            RewriteJournal journal = RewriteJournal.open(journalFile, JOB);
+            journal.finished(odtFile, 0);
+            journal.finish(false);
+
+            journal = RewriteJournal.open(journalFile, "[import aaa] => [import ccc]");
+            assertFalse(journal.isFinished(odtFile));
+            journal.finished(odtFile, 0);
+            journal.finish(false);
+
+            journal = RewriteJournal.open(journalFile, "[import aaa] => [import ccc]");
+            assertTrue(journal.isFinished(odtFile));
+            Files.writeString(odtFile.toPath(), "changed since");
+            assertFalse(journal.isFinished(odtFile));
+            journal.finish(true);
+        } finally {
+            odtFile.delete();
+            journalFile.delete();
+            folder.delete();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScanPipelineTest {
+
+    // Test that pipeline with small queues gives the same result in the same order as serial scan
+    @Test
+    void testPipelineMatchesSerialScan() throws Exception {
+        File folder = Files.createTempDirectory("odt_pipeline").toFile();
+        List<File> created = new ArrayList<>();
+        try {
+            for (int i = 0; i < 40; i++) {
+                created.add(TestOdt.create(new File(folder, String.format("doc_%02d.odt", i)),
+                        "<root><text:text-input>[import block_" + i + ".odt]</text:text-input></root>"));
+            }
+            File broken = new File(folder, "broken.odt");
+            Files.writeString(broken.toPath(), "not a zip");
+            created.add(broken);
+
+            Map<File, List<String>> serial = new ODTReader().scanODTFiles(folder.getAbsolutePath());
+
+            Metrics.get().reset();
+            ODTReader reader = new ODTReader();
+            reader.setPipeline(1, 3, 2);
+            List<File> order = new ArrayList<>();
+            List<List<String>> imports = new ArrayList<>();
+            reader.scanODTFiles(folder.getAbsolutePath(), (file, fileImports) -> {
+                order.add(file);
+                imports.add(fileImports);
+            });
+
+            assertEquals(new ArrayList<>(serial.keySet()), order, "Files should be emitted in walk order.");
+            assertEquals(new ArrayList<>(serial.values()), imports);
+            assertEquals(40, order.size(), "Broken file should be left out.");
+            assertEquals(1, Metrics.get().errorCount("ODTFileReadingException"));
+            assertTrue(Metrics.get().maxQueueDepth(ScanPipeline.PARSE_STAGE) <= 2, "Queue should stay bounded.");
+            assertTrue(Metrics.get().toPrometheus().contains("odt_pipeline_queue_capacity{stage=\"read\"} 2"));
+        } finally {
+            Metrics.get().reset();
+            created.forEach(File::delete);
+            folder.delete();
+        }
+    }
+
+    // Test that an Error thrown while parsing one file is reported for that file and does not stall the scan
+    @Test
+    void testPipelineSurvivesErrorInStage() throws Exception {
+        File folder = Files.createTempDirectory("odt_pipeline_error").toFile();
+        List<File> created = new ArrayList<>();
+        try {
+            for (int i = 0; i < 10; i++) {
+                created.add(TestOdt.create(new File(folder, String.format("doc_%02d.odt", i)),
+                        TestOdt.textInput("[import block_" + i + ".odt]")));
+            }
+            ImportExtractor throwing = (entryName, source) -> {
+                List<String> imports = new DomImportExtractor().extractImports(entryName, source);
+                if (imports.get(0).contains("block_3")) {
+                    throw new OutOfMemoryError("Injected");
+                }
+                return imports;
+            };
+
+            Metrics.get().reset();
+            ODTReader reader = new ODTReader();
+            reader.setExtractor(throwing);
+            reader.setPipeline(1, 2, 2);
+            Map<File, List<String>> result = assertTimeoutPreemptively(Duration.ofSeconds(30),
+                    () -> reader.scanODTFiles(folder.getAbsolutePath()));
+
+            assertEquals(9, result.size());
+            assertFalse(result.containsKey(created.get(3)));
+            assertEquals(1, Metrics.get().errorCount("ODTFileReadingException"));
+        } finally {
+            Metrics.get().reset();
+            created.forEach(File::delete);
+            folder.delete();
+        }
+    }
+
+    // Test that entries larger than the memory limit of a file are read again while parsed and give the same result
+    @Test
+    void testPipelineStreamsEntriesOverMemoryLimit() throws Exception {
+        File folder = Files.createTempDirectory("odt_pipeline_memory").toFile();
+        List<File> created = new ArrayList<>();
+        try {
+            // Budget of 1 MB lets a file keep 256 KB in memory
+            String padding = " ".repeat(300 * 1024);
+            for (int i = 0; i < 6; i++) {
+                created.add(TestOdt.create(new File(folder, String.format("doc_%02d.odt", i)),
+                        "<root>" + (i % 2 == 0 ? padding : "") + "<text:text-input>[import block_" + i
+                                + ".odt]</text:text-input></root>"));
+            }
+
+            Map<File, List<String>> serial = new ODTReader().scanODTFiles(folder.getAbsolutePath());
+
+            ODTReader reader = new ODTReader();
+            reader.setPipeline(2, 2, 1, 1);
+            Map<File, List<String>> piped = new LinkedHashMap<>();
+            reader.scanODTFiles(folder.getAbsolutePath(), piped::put);
+
+            assertEquals(serial, piped);
+            assertEquals(List.of("[import block_0.odt] (from content.xml)"), piped.get(created.get(0)));
+        } finally {
+            Metrics.get().reset();
+            created.forEach(File::delete);
+            folder.delete();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.example;
+
+import org.example.errors.ShardMergeException;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardResultTest {
+
+    // Test that shards scanned by separate JVMs merge into the same report as a single scan
+    @Test
+    void testMergedShardsMatchSingleScan() throws Exception {
+        File folder = Files.createTempDirectory("odt_shards").toFile();
+        File subFolder = new File(folder, "doc");
+        subFolder.mkdir();
+        List<File> created = new ArrayList<>();
+        try {
+            for (int i = 0; i < 12; i++) {
+                created.add(TestOdt.create(new File(i % 2 == 0 ? folder : subFolder, "doc_" + i + ".odt"),
+                        "<root><text:text-input>[import block_" + i + ".odt]</text:text-input></root>"));
+            }
+            created.add(TestOdt.create(new File(folder, "doc.odt"), "<root/>"));
+
+            List<Process> workers = new ArrayList<>();
+            List<File> partials = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                File partial = new File(folder, "shard-" + i + ".json");
+                partials.add(partial);
+                created.add(partial);
+                workers.add(new ProcessBuilder(System.getProperty("java.home") + File.separator + "bin" + File.separator
+                        + "java", "-cp", System.getProperty("java.class.path"), Main.class.getName(),
+                        "folderPath=" + folder.getAbsolutePath(), "shardCount=3", "shardIndex=" + i,
+                        "shardOutput=" + partial.getAbsolutePath(), "useIndex=false", "metricsOutput=")
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .start());
+            }
+            for (Process worker : workers) {
+                assertTrue(worker.waitFor(60, TimeUnit.SECONDS), "Worker should finish.");
+                assertEquals(0, worker.exitValue());
+            }
+
+            Map<File, List<String>> merged = ShardResult.merge(partials, folder.getAbsolutePath());
+            Map<File, List<String>> single = new ODTReader().scanODTFiles(folder.getAbsolutePath());
+
+            assertEquals(13, merged.size());
+            assertEquals(new ArrayList<>(single.keySet()), new ArrayList<>(merged.keySet()),
+                    "Files should be in walk order.");
+            assertEquals(ODTReader.generateJsonOutput(single).toString(), ODTReader.generateJsonOutput(merged).toString());
+        } finally {
+            created.forEach(File::delete);
+            subFolder.delete();
+            folder.delete();
+        }
+    }
+
+    // Test that every file is accepted by exactly one shard
+    @Test
+    void testShardsSplitFiles() throws Exception {
+        File folder = Files.createTempDirectory("odt_shards").toFile();
+        List<File> created = new ArrayList<>();
+        try {
+            for (int i = 0; i < 20; i++) {
+                created.add(TestOdt.create(new File(folder, "doc_" + i + ".odt"), "<root/>"));
+            }
+
+            List<File> all = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                all.addAll(ODTFileWalker.DEFAULT.withShard(i, 4).list(folder.toPath()));
+            }
+            all.sort(null);
+            assertEquals(ODTFileWalker.DEFAULT.list(folder.toPath()), all);
+            assertThrows(IllegalArgumentException.class, () -> ODTFileWalker.DEFAULT.withShard(4, 4));
+        } finally {
+            created.forEach(File::delete);
+            folder.delete();
+        }
+    }
+
+    // Test that merge refuses missing, repeated and differently scanned shards
+    @Test
+    void testMergeRejectsIncompleteShards() throws Exception {
+        File folder = Files.createTempDirectory("odt_shards").toFile();
+        File first = new File(folder, "shard-0.json");
+        File second = new File(folder, "shard-1.json");
+        try {
+            ShardResult.write(first, 0, 2, "content.xml", folder.getPath(), Map.of());
+            ShardResult.write(second, 0, 2, "content.xml", folder.getPath(), Map.of());
+            assertThrows(ShardMergeException.class, () -> ShardResult.merge(List.of(first), folder.getPath()));
+            assertThrows(ShardMergeException.class, () -> ShardResult.merge(List.of(first, second), folder.getPath()));
+
+            ShardResult.write(second, 1, 2, "styles.xml", folder.getPath(), Map.of());
+            assertThrows(ShardMergeException.class, () -> ShardResult.merge(List.of(first, second), folder.getPath()));
+
+            ShardResult.write(second, 1, 2, "content.xml", folder.getPath(),
+                    Map.of(new File(folder, "a.odt"), List.of("[import b.odt] (from content.xml)")));
+            assertEquals(Map.of(new File(folder.getPath(), "a.odt"), List.of("[import b.odt] (from content.xml)")),
+                    ShardResult.merge(List.of(first, second), folder.getPath()));
+        } finally {
+            first.delete();
+            second.delete();
+            folder.delete();
+        }
+    }
+}
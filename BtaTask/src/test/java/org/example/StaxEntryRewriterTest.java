@@ -0,0 +1,126 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StaxEntryRewriterTest {
+    private static final String CONTENT = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<!-- generated -->\n"
+            + "<office:document-content xmlns:office=\"urn:office\" xmlns:text=\"urn:text\">\n"
+            + "  <office:body>\n"
+            + "    <text:p text:style-name=\"P1\">a &amp; b<text:text-input text:description=\"x\">[import aaa]</text:text-input></text:p>\n"
+            + "    <text:p/>\n"
+            + "    <text:p></text:p>\n"
+            + "    <text:p><text:text-input>[import <text:span>ccc</text:span>]</text:text-input></text:p>\n"
+            + "  </office:body>\n"
+            + "</office:document-content>\n"
+            + "<!-- end -->\n";
+
+    // Test that only the replaced import differs from the input
+    @Test
+    void testKeepsWhitespaceAndEmptyElements() throws Exception {
+        List<String> imports = new ArrayList<>();
+        EntryRewriter.Rewrite rewrite = new StaxEntryRewriter().prepare("content.xml", "content.xml of test.odt",
+                () -> new ByteArrayInputStream(CONTENT.getBytes(StandardCharsets.UTF_8)),
+                ImportMatcher.of("[import aaa]", "[import bbb]"), false, imports);
+
+        assertEquals(1, rewrite.replacements());
+        assertEquals(List.of("[import aaa] (from content.xml)", "[import ccc] (from content.xml)"), imports);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rewrite.writeTo(out);
+        assertEquals(CONTENT.replace("[import aaa]", "[import bbb]"), out.toString(StandardCharsets.UTF_8));
+    }
+
+    // Test that CRLF line breaks, which the parser reports as LF, are written as CRLF again
+    @Test
+    void testKeepsCrlfLineBreaks() throws Exception {
+        String content = CONTENT.replace("\n", "\r\n");
+        EntryRewriter.Rewrite rewrite = new StaxEntryRewriter().prepare("content.xml", "content.xml of test.odt",
+                () -> new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+                ImportMatcher.of("[import aaa]", "[import bbb]"), false, null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rewrite.writeTo(out);
+        assertEquals(content.replace("[import aaa]", "[import bbb]"), out.toString(StandardCharsets.UTF_8));
+    }
+
+    // Test what is written in the writer's own form: attribute quotes and character references
+    @Test
+    void testWritesQuotesAndReferencesInOwnForm() throws Exception {
+        String content = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<root xmlns:text=\"urn:text\"><text:p text:style-name='P1'>&#65;</text:p>"
+                + "<text:text-input>[import aaa]</text:text-input></root>";
+        EntryRewriter.Rewrite rewrite = new StaxEntryRewriter().prepare("content.xml", "content.xml of test.odt",
+                () -> new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+                ImportMatcher.of("[import aaa]", "[import bbb]"), false, null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rewrite.writeTo(out);
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<root xmlns:text=\"urn:text\"><text:p text:style-name=\"P1\">A</text:p>"
+                + "<text:text-input>[import bbb]</text:text-input></root>", out.toString(StandardCharsets.UTF_8));
+    }
+
+    // Test that import split by markup is replaced like DOM does, as a single text
+    @Test
+    void testReplacesWholeTextContent() throws Exception {
+        EntryRewriter.Rewrite rewrite = new StaxEntryRewriter().prepare("content.xml", "content.xml of test.odt",
+                () -> new ByteArrayInputStream(CONTENT.getBytes(StandardCharsets.UTF_8)),
+                ImportMatcher.of("[import ccc]", "[import ddd]"), false, null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rewrite.writeTo(out);
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("<text:text-input>[import ddd]</text:text-input>"));
+    }
+
+    // Test that streamed entries are written into the archive, stored and deflated
+    @Test
+    void testRewriteOdtStreamsEntries() throws Exception {
+        File odtFile = File.createTempFile("stax", ".odt");
+        try {
+            try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(odtFile))) {
+                zos.putNextEntry(new ZipEntry("content.xml"));
+                zos.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+                zos.putNextEntry(new ZipEntry("styles.xml"));
+                zos.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+
+            RewriteOptions stored = new RewriteOptions(EntrySelector.DEFAULT, false, CompressionLevels.parse("xml:0"),
+                    ODTFileWalker.DEFAULT, new StaxEntryRewriter());
+            assertEquals(2, ODTEditor.rewriteOdt(odtFile, ImportMatcher.of("[import aaa]", "[import bbb]"), stored));
+            assertContent(odtFile, ZipEntry.STORED, CONTENT.replace("[import aaa]", "[import bbb]"));
+
+            RewriteOptions deflated = new RewriteOptions(EntrySelector.DEFAULT, false, CompressionLevels.DEFAULT,
+                    ODTFileWalker.DEFAULT, new StaxEntryRewriter());
+            assertEquals(2, ODTEditor.rewriteOdt(odtFile, ImportMatcher.of("[import bbb]", "[import aaa]"), deflated));
+            assertContent(odtFile, ZipEntry.DEFLATED, CONTENT);
+        } finally {
+            odtFile.delete();
+        }
+    }
+
+    private void assertContent(File odtFile, int method, String expected) throws Exception {
+        try (ZipFile zipFile = new ZipFile(odtFile)) {
+            for (String name : List.of("content.xml", "styles.xml")) {
+                ZipEntry entry = zipFile.getEntry(name);
+                assertEquals(method, entry.getMethod());
+                assertEquals(expected, new String(zipFile.getInputStream(entry).readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StaxImportExtractorTest {
+
+    // Extracts imports with both extractors from given xml
+    private void assertSameAsDom(String xml) throws Exception {
+        ImportExtractor.Source source = () -> new ByteArrayInputStream(xml.getBytes());
+        List<String> expected = new DomImportExtractor().extractImports("content.xml", source);
+        List<String> actual = new StaxImportExtractor().extractImports("content.xml", source);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void testSimpleImports() throws Exception {
+        assertSameAsDom("<root><tag>[import]import1</tag><other>[import]import2</other></root>");
+    }
+
+    @Test
+    void testNestedElementsReportWholeText() throws Exception {
+        assertSameAsDom("<root><p> [import block_1.odt] <span>tail</span> more</p><p>none</p></root>");
+    }
+
+    @Test
+    void testOnlyFirstTextNodeIsMatched() throws Exception {
+        // Second text node contains the marker, XPath text() only checks the first one
+        assertSameAsDom("<root><p>before<span>x</span>[import a.odt]</p></root>");
+    }
+
+    @Test
+    void testFirstTextAfterChildElement() throws Exception {
+        assertSameAsDom("<root><p><span>x</span>[import a.odt]<b>y</b></p>[import b.odt]</root>");
+    }
+
+    @Test
+    void testCommentsAndCdata() throws Exception {
+        assertSameAsDom("<root><p><!-- c -->[import a.odt]</p><q><![CDATA[[import b.odt]]]></q>"
+                + "<r>x<![CDATA[[import c.odt]]]></r><s>[imp<!-- c -->ort d.odt]</s></root>");
+    }
+
+    @Test
+    void testEntities() throws Exception {
+        assertSameAsDom("<root><p>&#91;import a&amp;b.odt]</p></root>");
+    }
+}
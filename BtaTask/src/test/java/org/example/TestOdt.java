@@ -0,0 +1,36 @@
+package org.example;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * ODT files for tests
+ */
+class TestOdt {
+
+    /**
+     * Creates an ODT file with a single content.xml entry
+     * @param odtFile file to create
+     * @param content content.xml
+     * @return created file
+     */
+    static File create(File odtFile, String content) throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(odtFile))) {
+            zos.putNextEntry(new ZipEntry("content.xml"));
+            zos.write(content.getBytes());
+            zos.closeEntry();
+        }
+        return odtFile;
+    }
+
+    /**
+     * @param importText text of the text:text-input element
+     * @return content.xml with a single text:text-input element
+     */
+    static String textInput(String importText) {
+        return "<root><text:text-input>" + importText + "</text:text-input></root>";
+    }
+}